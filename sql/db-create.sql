@@ -20,6 +20,8 @@ CREATE TABLE users_teams (
 	UNIQUE (user_id, team_id)
 );
 
+CREATE INDEX users_teams_team_user ON users_teams (team_id, user_id);
+
 INSERT INTO users VALUES (DEFAULT, 'ivanov');
 INSERT INTO teams VALUES (DEFAULT, 'teamA');
 
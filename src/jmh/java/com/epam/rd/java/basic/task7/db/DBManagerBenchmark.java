@@ -0,0 +1,173 @@
+package com.epam.rd.java.basic.task7.db;
+
+import com.epam.rd.java.basic.task7.db.entity.Team;
+import com.epam.rd.java.basic.task7.db.entity.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput and latency percentiles of the DBManager operations against embedded Derby.
+ * Latency percentiles come from the SampleTime mode. Read scaling is the throughput of one
+ * operation across thread counts:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbench.threads=1,4 -Dbench.args="DBManagerBenchmark.getUser -bm thrpt"
+ * </pre>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DBManagerBenchmark {
+
+    private static final int TEAMS = 20;
+    private static final int TEAMS_PER_USER = 5;
+
+    @State(Scope.Benchmark)
+    public static class Database {
+
+        @Param({"100", "10000"})
+        public int tableSize;
+
+        @Param({"10"})
+        public int poolSize;
+
+        /**
+         * Whether users_teams keeps the (team_id, user_id) index; without it team lookups can only
+         * use the single-column foreign key index.
+         */
+        @Param({"true", "false"})
+        public boolean teamIndex;
+
+        TestDatabase db;
+        DBManager dbm;
+        List<User> users;
+        Team[] teams;
+        final AtomicInteger sequence = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            db = new TestDatabase("bench" + System.nanoTime());
+            if (!teamIndex) {
+                db.getConnection().createStatement().executeUpdate("DROP INDEX users_teams_team_user");
+            }
+            dbm = db.newManager(properties(db));
+
+            List<Team> teamList = new ArrayList<>();
+            for (int i = 0; i < TEAMS; i++) {
+                teamList.add(Team.createTeam("team" + i));
+            }
+            dbm.insertTeams(teamList);
+            teams = teamList.toArray(new Team[0]);
+
+            users = new ArrayList<>();
+            for (int i = 0; i < tableSize; i++) {
+                users.add(User.createUser("user" + i));
+            }
+            dbm.insertUsers(users);
+            for (int i = 0; i < users.size(); i++) {
+                Team[] memberships = new Team[TEAMS_PER_USER];
+                for (int j = 0; j < TEAMS_PER_USER; j++) {
+                    memberships[j] = teams[(i + j) % TEAMS];
+                }
+                dbm.setTeamsForUser(users.get(i), memberships);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            dbm.close();
+            db.close();
+        }
+
+        Properties properties(TestDatabase db) {
+            Properties properties = db.properties();
+            properties.setProperty("pool.maxSize", String.valueOf(poolSize));
+            return properties;
+        }
+
+        User randomUser() {
+            return users.get(ThreadLocalRandom.current().nextInt(users.size()));
+        }
+
+        Team randomTeam() {
+            return teams[ThreadLocalRandom.current().nextInt(teams.length)];
+        }
+    }
+
+    /**
+     * A user without memberships owned by one benchmark thread, cleared before every call to
+     * setTeamsForUser so the UNIQUE (user_id, team_id) constraint never fires.
+     */
+    @State(Scope.Thread)
+    public static class ScratchUser {
+
+        User user;
+
+        @Setup(Level.Trial)
+        public void setUp(Database database) throws DBException {
+            user = User.createUser("s" + database.sequence.incrementAndGet());
+            database.dbm.insertUser(user);
+        }
+
+        @Setup(Level.Invocation)
+        public void clearMemberships(Database database) throws SQLException {
+            try (PreparedStatement statement = database.db.getConnection()
+                    .prepareStatement("DELETE FROM users_teams WHERE user_id = ?")) {
+                statement.setInt(1, user.getId());
+                statement.executeUpdate();
+            }
+        }
+    }
+
+    @Benchmark
+    public User insertUser(Database database) throws DBException {
+        User user = User.createUser("i" + database.sequence.incrementAndGet());
+        database.dbm.insertUser(user);
+        return user;
+    }
+
+    @Benchmark
+    public User getUser(Database database) throws DBException {
+        return database.dbm.getUser(database.randomUser().getLogin());
+    }
+
+    @Benchmark
+    public List<User> findAllUsers(Database database) throws DBException {
+        return database.dbm.findAllUsers();
+    }
+
+    @Benchmark
+    public boolean setTeamsForUser(Database database, ScratchUser scratch) throws DBException {
+        return database.dbm.setTeamsForUser(scratch.user, database.teams[0], database.teams[1],
+                database.teams[2], database.teams[3], database.teams[4]);
+    }
+
+    @Benchmark
+    public List<Team> getUserTeams(Database database) throws DBException {
+        return database.dbm.getUserTeams(database.randomUser());
+    }
+
+    @Benchmark
+    public List<User> getTeamUsers(Database database) throws DBException {
+        return database.dbm.getTeamUsers(database.randomTeam());
+    }
+
+    @Benchmark
+    public int countMembers(Database database) throws DBException {
+        return database.dbm.countMembers(database.randomTeam());
+    }
+
+    @Benchmark
+    public int countTeams(Database database) throws DBException {
+        return database.dbm.countTeams(database.randomUser());
+    }
+}
@@ -0,0 +1,85 @@
+package com.epam.rd.java.basic.task7.db;
+
+import com.epam.rd.java.basic.task7.db.entity.Team;
+import com.epam.rd.java.basic.task7.db.entity.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocation of the read paths with and without shared entities. Run with {@code -prof gc} and
+ * compare {@code gc.alloc.rate.norm} (bytes per call):
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbench.threads=1 -Dbench.args="EntityAllocationBenchmark -prof gc"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntityAllocationBenchmark {
+
+    private static final int TEAMS = 20;
+    private static final int TEAMS_PER_USER = 5;
+
+    @State(Scope.Benchmark)
+    public static class Database {
+
+        @Param({"1000"})
+        public int tableSize;
+
+        @Param({"false", "true"})
+        public boolean sharedEntities;
+
+        TestDatabase db;
+        DBManager dbm;
+        List<User> users;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            db = new TestDatabase("alloc" + System.nanoTime());
+            Properties properties = db.properties();
+            properties.setProperty("entities.shared", String.valueOf(sharedEntities));
+            dbm = db.newManager(properties);
+
+            List<Team> teams = new ArrayList<>();
+            for (int i = 0; i < TEAMS; i++) {
+                teams.add(Team.createTeam("team" + i));
+            }
+            dbm.insertTeams(teams);
+            users = new ArrayList<>();
+            for (int i = 0; i < tableSize; i++) {
+                users.add(User.createUser("user" + i));
+            }
+            dbm.insertUsers(users);
+            for (int i = 0; i < users.size(); i++) {
+                Team[] memberships = new Team[TEAMS_PER_USER];
+                for (int j = 0; j < TEAMS_PER_USER; j++) {
+                    memberships[j] = teams.get((i + j) % TEAMS);
+                }
+                dbm.setTeamsForUser(users.get(i), memberships);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            dbm.close();
+            db.close();
+        }
+    }
+
+    @Benchmark
+    public List<User> findAllUsers(Database database) throws DBException {
+        return database.dbm.findAllUsers();
+    }
+
+    @Benchmark
+    public List<Team> getUserTeams(Database database) throws DBException {
+        return database.dbm.getUserTeams(database.users.get(ThreadLocalRandom.current().nextInt(database.users.size())));
+    }
+}
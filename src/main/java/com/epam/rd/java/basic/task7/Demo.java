@@ -6,6 +6,7 @@ import com.epam.rd.java.basic.task7.db.entity.Team;
 import com.epam.rd.java.basic.task7.db.entity.User;
 
 import java.util.List;
+import java.util.Map;
 
 public class Demo {
 
@@ -52,8 +53,9 @@ public class Demo {
         dbManager.setTeamsForUser(userPetrov, teamA, teamB);
         dbManager.setTeamsForUser(userObama, teamA, teamB, teamC);
 
-        for (User user : dbManager.findAllUsers()) {
-            print(dbManager.getUserTeams(user));
+        Map<User, List<Team>> userTeams = dbManager.getTeamsForUsers(dbManager.findAllUsers());
+        for (List<Team> teams : userTeams.values()) {
+            print(teams);
             System.out.println("~~~~~");
         }
         // teamA
@@ -0,0 +1,197 @@
+package com.epam.rd.java.basic.task7.db;
+
+import com.epam.rd.java.basic.task7.db.config.AppConfig;
+import com.epam.rd.java.basic.task7.db.entity.Team;
+import com.epam.rd.java.basic.task7.db.entity.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking facade over {@link DBManager}. Calls run on virtual threads when the JDK has them
+ * and on a fixed pool sized like the connection pool otherwise. At most {@code maxInFlight} calls
+ * are queued or running; a call beyond that is not queued and returns at once with a future failed
+ * with {@link DBException} caused by {@link RejectedExecutionException}, so callers apply their
+ * own backoff.
+ */
+public class AsyncDBManager implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface DBCall<T> {
+
+        T call(DBManager dbManager) throws DBException;
+    }
+
+    private final DBManager dbManager;
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final long closeTimeoutMillis;
+
+    /**
+     * @param closeTimeoutMillis how long {@link #close()} waits for running calls
+     */
+    public AsyncDBManager(DBManager dbManager, int maxInFlight, long closeTimeoutMillis) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        }
+        this.dbManager = dbManager;
+        this.maxInFlight = maxInFlight;
+        this.closeTimeoutMillis = closeTimeoutMillis;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.executor = newExecutor(dbManager.getConfig().getPoolSettings().getMaxSize());
+    }
+
+    public static AsyncDBManager create(DBManager dbManager) {
+        AppConfig config = dbManager.getConfig();
+        return new AsyncDBManager(dbManager, config.getAsyncMaxInFlight(),
+                config.getPoolSettings().getAcquireTimeoutMillis());
+    }
+
+    public CompletableFuture<List<User>> findAllUsers() {
+        return submit(DBManager::findAllUsers);
+    }
+
+    public CompletableFuture<List<Team>> findAllTeams() {
+        return submit(DBManager::findAllTeams);
+    }
+
+    public CompletableFuture<List<User>> findUsers(int afterId, int limit) {
+        return submit(db -> db.findUsers(afterId, limit));
+    }
+
+    public CompletableFuture<List<Team>> findTeams(int afterId, int limit) {
+        return submit(db -> db.findTeams(afterId, limit));
+    }
+
+    public CompletableFuture<Boolean> insertUser(User user) {
+        return submit(db -> db.insertUser(user));
+    }
+
+    public CompletableFuture<Boolean> insertTeam(Team team) {
+        return submit(db -> db.insertTeam(team));
+    }
+
+    public CompletableFuture<Boolean> insertUsers(Collection<User> users) {
+        return submit(db -> db.insertUsers(users));
+    }
+
+    public CompletableFuture<Boolean> insertTeams(Collection<Team> teams) {
+        return submit(db -> db.insertTeams(teams));
+    }
+
+    public CompletableFuture<Boolean> deleteUsers(User... users) {
+        return submit(db -> db.deleteUsers(users));
+    }
+
+    public CompletableFuture<Boolean> deleteTeam(Team team) {
+        return submit(db -> db.deleteTeam(team));
+    }
+
+    public CompletableFuture<User> getUser(String login) {
+        return submit(db -> db.getUser(login));
+    }
+
+    public CompletableFuture<Team> getTeam(String name) {
+        return submit(db -> db.getTeam(name));
+    }
+
+    public CompletableFuture<Boolean> setTeamsForUser(User user, Team... teams) {
+        return submit(db -> db.setTeamsForUser(user, teams));
+    }
+
+    public CompletableFuture<Boolean> replaceTeamsForUser(User user, Team... teams) {
+        return submit(db -> db.replaceTeamsForUser(user, teams));
+    }
+
+    public CompletableFuture<Boolean> addTeamsForUser(User user, Team... teams) {
+        return submit(db -> db.addTeamsForUser(user, teams));
+    }
+
+    public CompletableFuture<List<Team>> getUserTeams(User user) {
+        return submit(db -> db.getUserTeams(user));
+    }
+
+    public CompletableFuture<List<User>> getTeamUsers(Team team) {
+        return submit(db -> db.getTeamUsers(team));
+    }
+
+    public CompletableFuture<Integer> countMembers(Team team) {
+        return submit(db -> db.countMembers(team));
+    }
+
+    public CompletableFuture<Integer> countTeams(User user) {
+        return submit(db -> db.countTeams(user));
+    }
+
+    public CompletableFuture<Map<User, List<Team>>> getTeamsForUsers(Collection<User> users) {
+        return submit(db -> db.getTeamsForUsers(users));
+    }
+
+    public CompletableFuture<Boolean> updateTeam(Team team) {
+        return submit(db -> db.updateTeam(team));
+    }
+
+    public <T> CompletableFuture<T> submit(DBCall<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (!inFlight.tryAcquire()) {
+            future.completeExceptionally(new DBException("All " + maxInFlight + " async slots are busy",
+                    new RejectedExecutionException()));
+            return future;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(call.call(dbManager));
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            future.completeExceptionally(new DBException("Async executor is shut down", e));
+        }
+        return future;
+    }
+
+    public int getPendingCalls() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(closeTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ExecutorService newExecutor(int poolSize) {
+        try {
+            // Executors.newVirtualThreadPerTaskExecutor() exists from JDK 21; the build targets 11
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+            return Executors.newFixedThreadPool(poolSize, r -> {
+                Thread thread = new Thread(r, "db-async-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.epam.rd.java.basic.task7.db;
+
+import com.epam.rd.java.basic.task7.db.config.AppConfig;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams CSV input into the database. Records are read one at a time and written with multi-row
+ * {@code INSERT ... VALUES (...), (...)} statements of {@code batch.size} rows, each committed on its
+ * own, so memory use does not depend on the size of the input. An import that fails part way leaves
+ * the batches committed before the failure in place.
+ * <p>
+ * Users and teams take the login or name from the first column. Memberships take a login and a team
+ * name; both are resolved to ids by reading the users and teams tables once before the import.
+ * Rows naming an unknown user or team are skipped.
+ */
+public class CsvImporter {
+
+    private static final String INSERT_USERS = "INSERT INTO users (login) VALUES %s";
+    private static final String INSERT_TEAMS = "INSERT INTO teams (name) VALUES %s";
+    private static final String INSERT_MEMBERSHIPS = "INSERT INTO users_teams (user_id, team_id) VALUES %s";
+    private static final String FIND_USER_IDS = "SELECT id, login FROM users";
+    private static final String FIND_TEAM_IDS = "SELECT id, name FROM teams ORDER BY id";
+
+    private static final Map<String, String> QUERIES = Map.of(
+            "INSERT_USERS", INSERT_USERS,
+            "INSERT_TEAMS", INSERT_TEAMS,
+            "INSERT_MEMBERSHIPS", INSERT_MEMBERSHIPS,
+            "FIND_USER_IDS", FIND_USER_IDS,
+            "FIND_TEAM_IDS", FIND_TEAM_IDS);
+
+    private final DBManager dbManager;
+    private final boolean header;
+
+    /**
+     * @param header whether the first record of every input is a header line to be skipped
+     */
+    public CsvImporter(DBManager dbManager, boolean header) {
+        this.dbManager = dbManager;
+        this.header = header;
+        dbManager.registerQueries(QUERIES);
+    }
+
+    public ImportResult importUsers(Reader in) throws DBException {
+        return importNames(in, INSERT_USERS, "users");
+    }
+
+    public ImportResult importTeams(Reader in) throws DBException {
+        return importNames(in, INSERT_TEAMS, "teams");
+    }
+
+    public ImportResult importMemberships(Reader in) throws DBException {
+        long start = System.nanoTime();
+        try (Connection connection = dbManager.getConnection()) {
+            Map<String, Integer> userIds = new HashMap<>();
+            Map<String, Integer> teamIds = new HashMap<>();
+            readIds(connection, FIND_USER_IDS, userIds);
+            readIds(connection, FIND_TEAM_IDS, teamIds);
+
+            MultiRowInsert insert = new MultiRowInsert(connection, INSERT_MEMBERSHIPS, 2);
+            CsvReader csv = new CsvReader(in);
+            long skipped = 0;
+            for (String[] record = first(csv); record != null; record = csv.next()) {
+                Integer userId = record.length < 2 ? null : userIds.get(record[0]);
+                Integer teamId = userId == null ? null : teamIds.get(record[1]);
+                if (teamId == null) {
+                    skipped++;
+                    continue;
+                }
+                insert.add(userId, teamId);
+            }
+            insert.finish();
+            dbManager.markWrite();
+            return new ImportResult(insert.rows, skipped, System.nanoTime() - start);
+        } catch (SQLException | IOException e) {
+            throw new DBException("Cannot import memberships", e);
+        } finally {
+            dbManager.membershipsChanged();
+        }
+    }
+
+    private ImportResult importNames(Reader in, String insertSql, String table) throws DBException {
+        long start = System.nanoTime();
+        try (Connection connection = dbManager.getConnection()) {
+            MultiRowInsert insert = new MultiRowInsert(connection, insertSql, 1);
+            CsvReader csv = new CsvReader(in);
+            long skipped = 0;
+            for (String[] record = first(csv); record != null; record = csv.next()) {
+                if (record[0].isEmpty()) {
+                    skipped++;
+                    continue;
+                }
+                insert.add(record[0]);
+            }
+            insert.finish();
+            dbManager.markWrite();
+            return new ImportResult(insert.rows, skipped, System.nanoTime() - start);
+        } catch (SQLException | IOException e) {
+            throw new DBException("Cannot import " + table, e);
+        }
+    }
+
+    private String[] first(CsvReader csv) throws IOException {
+        String[] record = csv.next();
+        return header && record != null ? csv.next() : record;
+    }
+
+    private void readIds(Connection connection, String sql, Map<String, Integer> ids) throws SQLException {
+        AppConfig config = dbManager.getConfig();
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setFetchSize(config.getDialect().streamingFetchSize(config.getUrl(), config.getFetchSize()));
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    // team names are not unique; like getTeams, the lowest id wins
+                    ids.putIfAbsent(rs.getString(2), rs.getInt(1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Buffers parameter values and writes them {@code batch.size} rows per statement.
+     */
+    private final class MultiRowInsert {
+
+        private final Connection connection;
+        private final String template;
+        private final int columns;
+        private final int rowsPerStatement;
+        private final Object[] values;
+        private String fullSql;
+        private int buffered;
+        private long rows;
+
+        private MultiRowInsert(Connection connection, String template, int columns) throws SQLException {
+            this.connection = connection;
+            this.template = template;
+            this.columns = columns;
+            this.rowsPerStatement = Math.max(1, Math.min(dbManager.getConfig().getBatchSize(),
+                    DBManager.MAX_IN_PARAMETERS / columns));
+            this.values = new Object[rowsPerStatement * columns];
+            connection.setAutoCommit(false);
+        }
+
+        private void add(Object... row) throws SQLException {
+            System.arraycopy(row, 0, values, buffered * columns, columns);
+            if (++buffered == rowsPerStatement) {
+                flush();
+            }
+        }
+
+        private void finish() throws SQLException {
+            if (buffered > 0) {
+                flush();
+            }
+        }
+
+        private void flush() throws SQLException {
+            String sql;
+            if (buffered == rowsPerStatement) {
+                if (fullSql == null) {
+                    fullSql = sql(rowsPerStatement);
+                }
+                sql = fullSql;
+            } else {
+                sql = sql(buffered);
+            }
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (int i = 0; i < buffered * columns; i++) {
+                    statement.setObject(i + 1, values[i]);
+                }
+                statement.executeUpdate();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+            rows += buffered;
+            buffered = 0;
+        }
+
+        private String sql(int rowCount) {
+            String row = columns == 1 ? "(?)" : "(?, ?)";
+            StringBuilder sb = new StringBuilder(rowCount * (row.length() + 2));
+            for (int i = 0; i < rowCount; i++) {
+                sb.append(i == 0 ? "" : ", ").append(row);
+            }
+            return String.format(template, sb);
+        }
+    }
+
+    /**
+     * Minimal RFC 4180 reader: comma separated, fields optionally quoted with {@code "}, quotes
+     * escaped by doubling, quoted fields may span lines. Fields are trimmed when unquoted.
+     */
+    private static final class CsvReader {
+
+        private final Reader in;
+        private final StringBuilder field = new StringBuilder();
+        private final List<String> record = new ArrayList<>();
+        private int peeked = -2;
+
+        private CsvReader(Reader in) {
+            this.in = in instanceof BufferedReader ? in : new BufferedReader(in);
+        }
+
+        private String[] next() throws IOException {
+            record.clear();
+            int c = read();
+            while (c == '\n' || c == '\r') {
+                c = read();
+            }
+            if (c == -1) {
+                return null;
+            }
+            while (true) {
+                field.setLength(0);
+                boolean quoted = false;
+                if (c == '"') {
+                    quoted = true;
+                    while (true) {
+                        c = read();
+                        if (c == -1) {
+                            throw new IOException("Unterminated quoted field");
+                        }
+                        if (c == '"') {
+                            c = read();
+                            if (c != '"') {
+                                break;
+                            }
+                        }
+                        field.append((char) c);
+                    }
+                }
+                while (c != ',' && c != '\n' && c != '\r' && c != -1) {
+                    field.append((char) c);
+                    c = read();
+                }
+                record.add(quoted ? field.toString() : field.toString().trim());
+                if (c != ',') {
+                    if (c == '\r' && (c = read()) != '\n') {
+                        peeked = c;
+                    }
+                    return record.toArray(new String[0]);
+                }
+                c = read();
+            }
+        }
+
+        private int read() throws IOException {
+            if (peeked != -2) {
+                int c = peeked;
+                peeked = -2;
+                return c;
+            }
+            return in.read();
+        }
+    }
+}
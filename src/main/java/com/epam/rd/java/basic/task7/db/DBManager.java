@@ -1,74 +1,332 @@
 package com.epam.rd.java.basic.task7.db;
 
+import com.epam.rd.java.basic.task7.db.cache.CacheStats;
+import com.epam.rd.java.basic.task7.db.cache.EntityCache;
+import com.epam.rd.java.basic.task7.db.cache.EntityRegistry;
+import com.epam.rd.java.basic.task7.db.coalesce.LookupCoalescer;
+import com.epam.rd.java.basic.task7.db.config.AppConfig;
+import com.epam.rd.java.basic.task7.db.config.ConfigWatcher;
 import com.epam.rd.java.basic.task7.db.entity.Team;
+import com.epam.rd.java.basic.task7.db.events.ChangeEvent;
+import com.epam.rd.java.basic.task7.db.events.ChangeFeed;
+import com.epam.rd.java.basic.task7.db.events.ChangeListener;
 import com.epam.rd.java.basic.task7.db.entity.User;
+import com.epam.rd.java.basic.task7.db.index.MembershipIndex;
+import com.epam.rd.java.basic.task7.db.metrics.DBManagerMXBean;
+import com.epam.rd.java.basic.task7.db.metrics.DBMetrics;
+import com.epam.rd.java.basic.task7.db.metrics.MetricsRecorder;
+import com.epam.rd.java.basic.task7.db.metrics.MetricsSnapshot;
+import com.epam.rd.java.basic.task7.db.metrics.Operation;
+import com.epam.rd.java.basic.task7.db.metrics.SlowQueryLog;
+import com.epam.rd.java.basic.task7.db.pool.ConnectionPool;
 
-import java.io.FileInputStream;
+import javax.management.JMException;
+import javax.management.ObjectName;
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class DBManager {
+/**
+ * Data access for users, teams and memberships. An instance is safe to share between threads:
+ * every call borrows its own pooled connection, configuration and pool are swapped through
+ * volatile fields, and the caches synchronise internally.
+ */
+public class DBManager implements AutoCloseable {
 
     private static final String INSERT_USER = "INSERT INTO users (login) VALUES (?)";
     private static final String INSERT_TEAM = "INSERT INTO teams (name) VALUES (?)";
     private static final String INSERT_TEAMS_FOR_USER = "INSERT INTO users_teams (user_id, team_id) VALUES (?, ?)";
-    private static final String GET_USER = "SELECT * FROM users WHERE login = ?";
-    private static final String GET_TEAM = "SELECT * FROM teams WHERE name = ?";
-    private static final String FIND_ALL_USER = "SELECT * FROM users";
-    private static final String FIND_ALL_TEAM = "SELECT * FROM teams";
-    private static final String FIND_TEAM_BY_ID = "SELECT * FROM teams WHERE id = ?";
-    private static final String FIND_USER_TEAMS = "SELECT * FROM users_teams WHERE user_id = ?";
+    private static final String LOCK_USER = "UPDATE users SET login = login WHERE id = ?";
+    private static final String DELETE_TEAM_FOR_USER = "DELETE FROM users_teams WHERE user_id = ? AND team_id = ?";
+    private static final String FIND_USER_TEAM_IDS = "SELECT team_id FROM users_teams WHERE user_id = ?";
+    private static final String GET_USER = "SELECT id, login FROM users WHERE login = ?";
+    private static final String GET_TEAM = "SELECT id, name FROM teams WHERE name = ?";
+    private static final String GET_USERS = "SELECT id, login FROM users WHERE login IN (%s)";
+    private static final String GET_TEAMS = "SELECT id, name FROM teams WHERE name IN (%s) ORDER BY id";
+    private static final String FIND_ALL_USER = "SELECT id, login FROM users";
+    private static final String FIND_ALL_TEAM = "SELECT id, name FROM teams";
+    private static final String FIND_USERS_AFTER = "SELECT id, login FROM users WHERE id > ? ORDER BY id";
+    private static final String FIND_TEAMS_AFTER = "SELECT id, name FROM teams WHERE id > ? ORDER BY id";
+    private static final String FIND_USER_TEAMS = "SELECT t.id, t.name FROM users_teams ut"
+            + " JOIN teams t ON t.id = ut.team_id WHERE ut.user_id = ?";
+    private static final String FIND_TEAM_USERS = "SELECT u.id, u.login FROM users_teams ut"
+            + " JOIN users u ON u.id = ut.user_id WHERE ut.team_id = ?";
+    private static final String COUNT_MEMBERS = "SELECT COUNT(*) FROM users_teams WHERE team_id = ?";
+    private static final String COUNT_TEAMS = "SELECT COUNT(*) FROM users_teams WHERE user_id = ?";
+    /**
+     * Every membership as (user_id, login, team_id, name); shared with {@link MembershipExporter}.
+     */
+    static final String FIND_MEMBERSHIPS = "SELECT ut.user_id, u.login, ut.team_id, t.name FROM users_teams ut"
+            + " JOIN users u ON u.id = ut.user_id JOIN teams t ON t.id = ut.team_id";
+    private static final String FIND_TEAMS_FOR_USERS = "SELECT ut.user_id, t.id, t.name FROM users_teams ut"
+            + " JOIN teams t ON t.id = ut.team_id WHERE ut.user_id IN (%s)";
     private static final String DELETE_TEAM = "DELETE FROM teams WHERE id = ?";
     private static final String DELETE_USER = "DELETE FROM users WHERE id = ?";
     private static final String UPDATE_TEAM = "UPDATE teams SET name = ? WHERE id = ?";
 
-    private static DBManager instance;
+    /** The SQL above by constant name, for the slow-query log. */
+    private static final Map<String, String> QUERIES = Map.ofEntries(
+            Map.entry("INSERT_USER", INSERT_USER),
+            Map.entry("INSERT_TEAM", INSERT_TEAM),
+            Map.entry("INSERT_TEAMS_FOR_USER", INSERT_TEAMS_FOR_USER),
+            Map.entry("LOCK_USER", LOCK_USER),
+            Map.entry("DELETE_TEAM_FOR_USER", DELETE_TEAM_FOR_USER),
+            Map.entry("FIND_USER_TEAM_IDS", FIND_USER_TEAM_IDS),
+            Map.entry("GET_USER", GET_USER),
+            Map.entry("GET_TEAM", GET_TEAM),
+            Map.entry("GET_USERS", GET_USERS),
+            Map.entry("GET_TEAMS", GET_TEAMS),
+            Map.entry("FIND_ALL_USER", FIND_ALL_USER),
+            Map.entry("FIND_ALL_TEAM", FIND_ALL_TEAM),
+            Map.entry("FIND_USERS_AFTER", FIND_USERS_AFTER),
+            Map.entry("FIND_TEAMS_AFTER", FIND_TEAMS_AFTER),
+            Map.entry("FIND_USER_TEAMS", FIND_USER_TEAMS),
+            Map.entry("FIND_TEAM_USERS", FIND_TEAM_USERS),
+            Map.entry("COUNT_MEMBERS", COUNT_MEMBERS),
+            Map.entry("COUNT_TEAMS", COUNT_TEAMS),
+            Map.entry("FIND_MEMBERSHIPS", FIND_MEMBERSHIPS),
+            Map.entry("FIND_TEAMS_FOR_USERS", FIND_TEAMS_FOR_USERS),
+            Map.entry("DELETE_TEAM", DELETE_TEAM),
+            Map.entry("DELETE_USER", DELETE_USER),
+            Map.entry("UPDATE_TEAM", UPDATE_TEAM));
 
-    public static synchronized DBManager getInstance() {
-        if (instance == null) {
-            instance = new DBManager();
+    static final int MAX_IN_PARAMETERS = 1000;
+
+    private static final Logger LOG = Logger.getLogger(DBManager.class.getName());
+    /**
+     * System property with the path of the configuration file read by {@link #getInstance()};
+     * {@code app.properties} in the working directory when unset.
+     */
+    public static final String CONFIG_FILE_PROPERTY = "task7.config";
+
+    private static final String APP_PROPERTIES = "app.properties";
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+    private static final long NO_WRITE = Long.MIN_VALUE;
+
+    private volatile AppConfig config;
+    private volatile ConnectionPool pool;
+    private volatile ConnectionPool[] replicas;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final ThreadLocal<long[]> lastWrite = ThreadLocal.withInitial(() -> new long[]{NO_WRITE});
+    private ConfigWatcher watcher;
+
+    private volatile EntityCache userCache;
+    private volatile EntityCache teamCache;
+    private final EntityRegistry registry;
+    private final EntityMapper<User> userMapper;
+    private final EntityMapper<Team> teamMapper;
+
+    private final LookupCoalescer<String, User> userLookups;
+    private final LookupCoalescer<String, Team> teamLookups;
+
+    private MembershipWriteBehind membershipWriter;
+    private final MembershipIndex membershipIndex;
+    /** Held from the commit of a membership change until the index has it; see {@link #commit}. */
+    private final Object indexOrder = new Object();
+
+    private final MetricsRecorder metrics;
+    private final LongSupplier nanoClock;
+    private final ObjectName mbeanName;
+    private final SlowQueryLog slowQueries;
+    private final ChangeFeed changes;
+
+    /**
+     * Lazily created on first use by the class initialisation of {@link Holder}, which the JVM
+     * guarantees to run once; later calls read a final field without locking.
+     */
+    public static DBManager getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private static final class Holder {
+
+        private static final DBManager INSTANCE = create();
+
+        private static DBManager create() {
+            Path file = Path.of(System.getProperty(CONFIG_FILE_PROPERTY, APP_PROPERTIES));
+            DBManager dbManager = new DBManager(loadConfig(file));
+            dbManager.watch(file);
+            return dbManager;
         }
-        return instance;
+    }
+
+    DBManager(AppConfig config) {
+        this(config, config.isMetricsEnabled() ? new DBMetrics() : MetricsRecorder.NOOP);
+    }
+
+    DBManager(AppConfig config, MetricsRecorder metrics) {
+        this(config, metrics, System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock the time source of the read-your-writes window
+     */
+    DBManager(AppConfig config, MetricsRecorder metrics, LongSupplier nanoClock) {
+        this.config = config;
+        this.nanoClock = nanoClock;
+        this.metrics = metrics;
+        this.pool = new ConnectionPool(config.getUrl(), config.getPoolSettings());
+        this.replicas = createReplicas(config);
+        this.userCache = createCache(config);
+        this.teamCache = createCache(config);
+        this.registry = config.isSharedEntitiesEnabled()
+                ? new EntityRegistry(config.getSharedEntitiesMaxId(), config.getSharedEntitiesMaxNames())
+                : null;
+        this.userMapper = userMapper(registry);
+        this.teamMapper = teamMapper(registry);
+        if (config.isCoalesceEnabled()) {
+            // each caller is recorded under GET_USER or GET_TEAM, the shared queries apart from them
+            this.userLookups = new LookupCoalescer<>("users",
+                    logins -> getUsers(Operation.COALESCED_USERS, logins), config.getCoalesceWindowMicros(),
+                    Math.min(config.getCoalesceMaxBatch(), MAX_IN_PARAMETERS), config.getCoalesceThreads());
+            this.teamLookups = new LookupCoalescer<>("teams",
+                    names -> getTeams(Operation.COALESCED_TEAMS, names), config.getCoalesceWindowMicros(),
+                    Math.min(config.getCoalesceMaxBatch(), MAX_IN_PARAMETERS), config.getCoalesceThreads());
+        } else {
+            this.userLookups = null;
+            this.teamLookups = null;
+        }
+        this.membershipIndex = config.isMembershipIndexEnabled()
+                ? new MembershipIndex(this::loadMembershipIndex)
+                : null;
+        this.mbeanName = config.isJmxEnabled() ? registerMBean() : null;
+        this.slowQueries = !config.isSlowQueryLogEnabled() ? null
+                : new SlowQueryLog(config.getSlowQueryThresholdMillis(), config.getSlowQueryQueueCapacity());
+        registerQueries(QUERIES);
+        registerQueries(Map.of("UPSERT_MEMBERSHIP", config.getDialect().upsertMembership()));
+        this.changes = new ChangeFeed(config.getEventBufferSize(), config.getEventMaxBatch());
+    }
+
+    public AppConfig getConfig() {
+        return config;
+    }
+
+    public CacheStats getUserCacheStats() {
+        return userCache.stats();
+    }
+
+    public CacheStats getTeamCacheStats() {
+        return teamCache.stats();
+    }
+
+    public CacheStats getStatementCacheStats() {
+        return pool.getStatementCacheStats();
+    }
+
+    public MetricsSnapshot getMetrics() {
+        return new MetricsSnapshot(metrics.operations(), metrics.acquireTimes(), pool.getActiveConnections(),
+                userCache.stats(), teamCache.stats(), pool.getStatementCacheStats());
+    }
+
+    public void resetMetrics() {
+        metrics.reset();
+    }
+
+    /**
+     * Delivers every change committed through this manager from now on to the listener, on a
+     * thread of its own, until the subscription is closed. Writers never wait for listeners.
+     */
+    public ChangeFeed.Subscription subscribe(ChangeListener listener) {
+        return changes.subscribe(listener);
     }
 
     public List<User> findAllUsers() throws DBException {
+        long start = metrics.start();
         List<User> userList = new ArrayList<>();
-        String url = getUrl();
-        try (Connection connection = DriverManager.getConnection(url);
+        try (Connection connection = getReadConnection();
              PreparedStatement statement = connection.prepareStatement(FIND_ALL_USER);
         ) {
             ResultSet rs = statement.executeQuery();
+            RowMapper<User> rows = userMapper.forQuery(FIND_ALL_USER, rs);
             while (rs.next()) {
-                userList.add(mapUser(rs));
+                userList.add(rows.map(rs));
             }
         } catch (SQLException throwables) {
-            throwables.printStackTrace();
+            metrics.failed(Operation.FIND_ALL_USERS, start);
+            throw new DBException("Cannot find users", throwables);
         }
+        metrics.completed(Operation.FIND_ALL_USERS, start, userList.size());
         return userList;
     }
 
     public List<Team> findAllTeams() throws DBException {
+        long start = metrics.start();
         List<Team> teamList = new ArrayList<>();
-        String url = getUrl();
-        try (Connection connection = DriverManager.getConnection(url);
+        try (Connection connection = getReadConnection();
              PreparedStatement statement = connection.prepareStatement(FIND_ALL_TEAM);
         ) {
             ResultSet rs = statement.executeQuery();
+            RowMapper<Team> rows = teamMapper.forQuery(FIND_ALL_TEAM, rs);
             while (rs.next()) {
-                teamList.add(mapTeam(rs));
+                teamList.add(rows.map(rs));
             }
         } catch (SQLException throwables) {
-            throwables.printStackTrace();
+            metrics.failed(Operation.FIND_ALL_TEAMS, start);
+            throw new DBException("Cannot find teams", throwables);
         }
+        metrics.completed(Operation.FIND_ALL_TEAMS, start, teamList.size());
         return teamList;
     }
 
+    /**
+     * Returns up to {@code limit} users with ids greater than {@code afterId}, ordered by id.
+     * Pass 0 for the first page and the id of the last returned user for the next one.
+     */
+    public List<User> findUsers(int afterId, int limit) throws DBException {
+        return findPage(Operation.FIND_USERS, FIND_USERS_AFTER, afterId, limit, userMapper);
+    }
+
+    /**
+     * Returns up to {@code limit} teams with ids greater than {@code afterId}, ordered by id.
+     * Pass 0 for the first page and the id of the last returned team for the next one.
+     */
+    public List<Team> findTeams(int afterId, int limit) throws DBException {
+        return findPage(Operation.FIND_TEAMS, FIND_TEAMS_AFTER, afterId, limit, teamMapper);
+    }
+
+    /**
+     * Streams all users using the configured fetch size. The stream holds a pooled connection
+     * until it is closed, so use it in a try-with-resources block.
+     */
+    public Stream<User> streamAllUsers() throws DBException {
+        return stream(Operation.STREAM_USERS, FIND_ALL_USER, userMapper);
+    }
+
+    /**
+     * Streams all teams using the configured fetch size. The stream holds a pooled connection
+     * until it is closed, so use it in a try-with-resources block.
+     */
+    public Stream<Team> streamAllTeams() throws DBException {
+        return stream(Operation.STREAM_TEAMS, FIND_ALL_TEAM, teamMapper);
+    }
+
     public boolean insertUser(User user) throws DBException {
-        String url = getUrl();
-        try (Connection connection = DriverManager.getConnection(url);
+        long start = metrics.start();
+        try (Connection connection = getConnection();
              PreparedStatement statement = connection.prepareStatement(INSERT_USER, Statement.RETURN_GENERATED_KEYS);
         ) {
             statement.setString(1, user.getLogin());
@@ -79,21 +337,25 @@ public class DBManager {
             try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
                 if (generatedKeys.next()) {
                     user.setId(generatedKeys.getInt(1));
+                    userCache.put(user.getId(), user.getLogin());
                 } else {
                     throw new SQLException("Creating user failed, no ID obtained.");
                 }
             }
 
         } catch (SQLException throwables) {
-            throwables.printStackTrace();
+            metrics.failed(Operation.INSERT_USER, start);
+            throw new DBException("Cannot insert user " + user.getLogin(), throwables);
         }
-
+        changes.publish(ChangeEvent.Type.USER_INSERTED, user.getId(), 0, user.getLogin());
+        markWrite();
+        metrics.completed(Operation.INSERT_USER, start, 1);
         return true;
     }
 
     public boolean insertTeam(Team team) throws DBException {
-        String url = getUrl();
-        try (Connection connection = DriverManager.getConnection(url);
+        long start = metrics.start();
+        try (Connection connection = getConnection();
              PreparedStatement statement = connection.prepareStatement(INSERT_TEAM, Statement.RETURN_GENERATED_KEYS);
         ) {
             statement.setString(1, team.getName());
@@ -104,172 +366,1260 @@ public class DBManager {
             try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
                 if (generatedKeys.next()) {
                     team.setId(generatedKeys.getInt(1));
+                    teamCache.put(team.getId(), team.getName());
                 } else {
-                    throw new SQLException("Creating user failed, no ID obtained.");
+                    throw new SQLException("Creating team failed, no ID obtained.");
                 }
             }
 
         } catch (SQLException throwables) {
-            throwables.printStackTrace();
+            metrics.failed(Operation.INSERT_TEAM, start);
+            throw new DBException("Cannot insert team " + team.getName(), throwables);
+        }
+        changes.publish(ChangeEvent.Type.TEAM_INSERTED, 0, team.getId(), team.getName());
+        markWrite();
+        metrics.completed(Operation.INSERT_TEAM, start, 1);
+        return true;
+    }
+
+    public boolean insertUsers(Collection<User> users) throws DBException {
+        long start = metrics.start();
+        try (Connection connection = getConnection()) {
+            int[] ids = insertAll(connection, INSERT_USER, users, User::getLogin);
+            int i = 0;
+            for (User user : users) {
+                user.setId(ids[i++]);
+                userCache.put(user.getId(), user.getLogin());
+            }
+        } catch (SQLException throwables) {
+            metrics.failed(Operation.INSERT_USERS, start);
+            throw new DBException("Cannot insert users", throwables);
+        }
+        for (User user : users) {
+            changes.publish(ChangeEvent.Type.USER_INSERTED, user.getId(), 0, user.getLogin());
         }
+        markWrite();
+        metrics.completed(Operation.INSERT_USERS, start, users.size());
+        return true;
+    }
 
+    public boolean insertTeams(Collection<Team> teams) throws DBException {
+        long start = metrics.start();
+        try (Connection connection = getConnection()) {
+            int[] ids = insertAll(connection, INSERT_TEAM, teams, Team::getName);
+            int i = 0;
+            for (Team team : teams) {
+                team.setId(ids[i++]);
+                teamCache.put(team.getId(), team.getName());
+            }
+        } catch (SQLException throwables) {
+            metrics.failed(Operation.INSERT_TEAMS, start);
+            throw new DBException("Cannot insert teams", throwables);
+        }
+        for (Team team : teams) {
+            changes.publish(ChangeEvent.Type.TEAM_INSERTED, 0, team.getId(), team.getName());
+        }
+        markWrite();
+        metrics.completed(Operation.INSERT_TEAMS, start, teams.size());
         return true;
     }
 
     public boolean deleteUsers(User... users) throws DBException {
         for (User user : users) {
             if (user == null) return false;
-            try (Connection con = DriverManager.getConnection(getUrl());
-                 PreparedStatement stmt = con.prepareStatement(DELETE_USER);
-            ) {
-                stmt.setInt(1, user.getId());
-                stmt.executeUpdate();
+        }
+        long start = metrics.start();
+        int batchSize = config.getBatchSize();
+        try (Connection con = getConnection()) {
+            con.setAutoCommit(false);
+            try (PreparedStatement stmt = con.prepareStatement(DELETE_USER)) {
+                for (int i = 0; i < users.length; i++) {
+                    stmt.setInt(1, users[i].getId());
+                    stmt.addBatch();
+                    if ((i + 1) % batchSize == 0) {
+                        stmt.executeBatch();
+                    }
+                }
+                stmt.executeBatch();
+                commit(con, index -> {
+                    for (User user : users) {
+                        index.removeUser(user.getId());
+                    }
+                });
             } catch (SQLException throwables) {
-                throwables.printStackTrace();
-                return false;
+                con.rollback();
+                throw throwables;
+            }
+        } catch (SQLException throwables) {
+            metrics.failed(Operation.DELETE_USERS, start);
+            throw new DBException("Cannot delete users", throwables);
+        } finally {
+            for (User user : users) {
+                userCache.invalidate(user.getId());
+                if (registry != null) {
+                    registry.removeUser(user.getId());
+                }
             }
         }
+        for (User user : users) {
+            changes.publish(ChangeEvent.Type.USER_DELETED, user.getId(), 0, user.getLogin());
+        }
+        markWrite();
+        metrics.completed(Operation.DELETE_USERS, start, users.length);
         return true;
     }
 
     public boolean deleteTeam(Team team) throws DBException {
         if (team == null) return false;
-        try (Connection con = DriverManager.getConnection(getUrl());
-             PreparedStatement stmt = con.prepareStatement(DELETE_TEAM);
-        ) {
-            stmt.setInt(1, team.getId());
-            stmt.executeUpdate();
+        long start = metrics.start();
+        int deleted;
+        try (Connection con = getConnection()) {
+            con.setAutoCommit(false);
+            try (PreparedStatement stmt = con.prepareStatement(DELETE_TEAM)) {
+                stmt.setInt(1, team.getId());
+                deleted = stmt.executeUpdate();
+                commit(con, index -> index.removeTeam(team.getId()));
+            } catch (SQLException throwables) {
+                con.rollback();
+                throw throwables;
+            }
         } catch (SQLException throwables) {
-            throwables.printStackTrace();
-            return false;
+            metrics.failed(Operation.DELETE_TEAM, start);
+            throw new DBException("Cannot delete team " + team.getName(), throwables);
+        } finally {
+            teamCache.invalidate(team.getId());
+            if (registry != null) {
+                registry.removeTeam(team.getId());
+            }
         }
+        changes.publish(ChangeEvent.Type.TEAM_DELETED, 0, team.getId(), team.getName());
+        markWrite();
+        metrics.completed(Operation.DELETE_TEAM, start, deleted);
         return true;
     }
 
     public User getUser(String login) throws DBException {
+        long start = metrics.start();
         User user = User.createUser(login);
-        try (Connection con = DriverManager.getConnection(getUrl());
+        int cachedId = userCache.getId(login);
+        if (cachedId != EntityCache.MISS) {
+            user.setId(cachedId);
+            metrics.completed(Operation.GET_USER, start, 1);
+            return user;
+        }
+        if (userLookups != null && !readsFromPrimary()) {
+            User shared;
+            try {
+                shared = await(userLookups.get(login));
+            } catch (DBException e) {
+                metrics.failed(Operation.GET_USER, start);
+                throw e;
+            }
+            if (shared != null) {
+                user.setId(shared.getId());
+                userCache.put(user.getId(), login);
+            }
+            metrics.completed(Operation.GET_USER, start, shared == null ? 0 : 1);
+            return user;
+        }
+        int found = 0;
+        try (Connection con = getReadConnection();
              PreparedStatement stmt = con.prepareStatement(GET_USER);
         ) {
             stmt.setString(1, login);
             ResultSet resultSet = stmt.executeQuery();
             if (resultSet.next()) {
-                user.setId(resultSet.getInt("id"));
+                user.setId(userMapper.forQuery(GET_USER, resultSet).map(resultSet).getId());
+                userCache.put(user.getId(), login);
+                found = 1;
             }
         } catch (SQLException throwables) {
-            throwables.printStackTrace();
+            metrics.failed(Operation.GET_USER, start);
+            throw new DBException("Cannot get user " + login, throwables);
         }
-
+        metrics.completed(Operation.GET_USER, start, found);
         return user;
     }
 
     public Team getTeam(String name) throws DBException {
+        long start = metrics.start();
         Team team = Team.createTeam(name);
-        try (Connection con = DriverManager.getConnection(getUrl());
+        int cachedId = teamCache.getId(name);
+        if (cachedId != EntityCache.MISS) {
+            team.setId(cachedId);
+            metrics.completed(Operation.GET_TEAM, start, 1);
+            return team;
+        }
+        if (teamLookups != null && !readsFromPrimary()) {
+            Team shared;
+            try {
+                shared = await(teamLookups.get(name));
+            } catch (DBException e) {
+                metrics.failed(Operation.GET_TEAM, start);
+                throw e;
+            }
+            if (shared != null) {
+                team.setId(shared.getId());
+                teamCache.put(team.getId(), name);
+            }
+            metrics.completed(Operation.GET_TEAM, start, shared == null ? 0 : 1);
+            return team;
+        }
+        int found = 0;
+        try (Connection con = getReadConnection();
              PreparedStatement stmt = con.prepareStatement(GET_TEAM);
         ) {
             stmt.setString(1, name);
             ResultSet resultSet = stmt.executeQuery();
             if (resultSet.next()) {
-                team.setId(resultSet.getInt("id"));
+                team.setId(teamMapper.forQuery(GET_TEAM, resultSet).map(resultSet).getId());
+                teamCache.put(team.getId(), name);
+                found = 1;
             }
         } catch (SQLException throwables) {
-            throwables.printStackTrace();
+            metrics.failed(Operation.GET_TEAM, start);
+            throw new DBException("Cannot get team " + name, throwables);
         }
-
+        metrics.completed(Operation.GET_TEAM, start, found);
         return team;
     }
 
+    /**
+     * Looks up many users in one IN-list query (split only past 1000 logins).
+     * Users are keyed by the login they were requested under, which differs from the stored
+     * login where the database compares case-insensitively. Logins that do not exist are absent
+     * from the result.
+     */
+    public Map<String, User> getUsers(Collection<String> logins) throws DBException {
+        return getUsers(Operation.GET_USERS, logins);
+    }
+
+    private Map<String, User> getUsers(Operation operation, Collection<String> logins) throws DBException {
+        Dialect dialect = config.getDialect();
+        Map<String, List<String>> requested = byMatchKey(dialect, logins);
+        Map<String, User> users = new HashMap<>();
+        findByKeys(operation, GET_USERS, logins, userMapper, user -> {
+            for (String login : requested.getOrDefault(dialect.matchKey(user.getLogin()), List.of())) {
+                users.putIfAbsent(login, user);
+            }
+        });
+        return users;
+    }
+
+    /**
+     * Looks up many teams in one IN-list query (split only past 1000 names). Where names repeat
+     * the team with the lowest id wins. Teams are keyed by the name they were requested under;
+     * names that do not exist are absent from the result.
+     */
+    public Map<String, Team> getTeams(Collection<String> names) throws DBException {
+        return getTeams(Operation.GET_TEAMS, names);
+    }
+
+    private Map<String, Team> getTeams(Operation operation, Collection<String> names) throws DBException {
+        Dialect dialect = config.getDialect();
+        Map<String, List<String>> requested = byMatchKey(dialect, names);
+        Map<String, Team> teams = new HashMap<>();
+        findByKeys(operation, GET_TEAMS, names, teamMapper, team -> {
+            for (String name : requested.getOrDefault(dialect.matchKey(team.getName()), List.of())) {
+                teams.putIfAbsent(name, team);
+            }
+        });
+        return teams;
+    }
+
     public boolean setTeamsForUser(User user, Team... teams) throws DBException {
-        if (user == null) throw new DBException("", new NullPointerException());
-        String url = getUrl();
-        try (Connection connection = DriverManager.getConnection(url);
-        ) {
+        if (user == null) throw new DBException("User is null", new NullPointerException());
+        for (Team team : teams) {
+            if (team == null) throw new DBException("Team is null", new NullPointerException());
+        }
+        long start = metrics.start();
+        int batchSize = config.getBatchSize();
+        try (Connection connection = getConnection()) {
             connection.setAutoCommit(false);
             try (PreparedStatement statement = connection.prepareStatement(INSERT_TEAMS_FOR_USER)) {
-                for (Team team : teams) {
-                    if (team == null) {
-                        connection.rollback();
-                        throw new DBException("", new NullPointerException());
+                for (int i = 0; i < teams.length; i++) {
+                    statement.setInt(1, user.getId());
+                    statement.setInt(2, teams[i].getId());
+                    statement.addBatch();
+                    if ((i + 1) % batchSize == 0) {
+                        statement.executeBatch();
                     }
-                    statement.setString(1, String.valueOf(user.getId()));
-                    statement.setString(2, String.valueOf(team.getId()));
-                    statement.executeUpdate();
                 }
+                statement.executeBatch();
+                commit(connection, index -> {
+                    for (Team team : teams) {
+                        index.addMembership(user.getId(), user.getLogin(), team.getId(), team.getName());
+                    }
+                });
             } catch (SQLException throwables) {
                 connection.rollback();
-                throw new DBException("", throwables);
+                throw throwables;
             }
-            connection.commit();
         } catch (SQLException throwables) {
-            throwables.printStackTrace();
-            throw new DBException("", throwables);
+            metrics.failed(Operation.SET_TEAMS_FOR_USER, start);
+            throw new DBException("Cannot set teams for user " + user.getLogin(), throwables);
+        }
+        for (Team team : teams) {
+            changes.publish(ChangeEvent.Type.MEMBERSHIP_ADDED, user.getId(), team.getId(), null);
         }
+        markWrite();
+        metrics.completed(Operation.SET_TEAMS_FOR_USER, start, teams.length);
+        return true;
+    }
 
+    /**
+     * Makes the given teams the only teams of the user. The user row is locked and the current
+     * memberships are read inside the transaction, and only the missing ones are inserted and the
+     * surplus ones deleted, in batches, so memberships that stay are not touched. Concurrent
+     * replace and add calls for the same user wait for each other.
+     */
+    public boolean replaceTeamsForUser(User user, Team... teams) throws DBException {
+        if (user == null) throw new DBException("User is null", new NullPointerException());
+        Map<Integer, Team> wanted = teamsById(teams);
+        long start = metrics.start();
+        List<Team> added = new ArrayList<>();
+        List<Integer> removed = new ArrayList<>();
+        try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                lockUser(connection, user.getId());
+                List<Integer> current = findUserTeamIds(connection, user.getId());
+                for (Team team : wanted.values()) {
+                    if (!current.contains(team.getId())) {
+                        added.add(team);
+                    }
+                }
+                for (Integer teamId : current) {
+                    if (!wanted.containsKey(teamId)) {
+                        removed.add(teamId);
+                    }
+                }
+                executeForTeams(connection, DELETE_TEAM_FOR_USER, 1, user.getId(), removed);
+                executeForTeams(connection, INSERT_TEAMS_FOR_USER, 1, user.getId(), ids(added));
+                commit(connection, index -> {
+                    for (Integer teamId : removed) {
+                        index.removeMembership(user.getId(), teamId);
+                    }
+                    for (Team team : added) {
+                        index.addMembership(user.getId(), user.getLogin(), team.getId(), team.getName());
+                    }
+                });
+            } catch (SQLException throwables) {
+                connection.rollback();
+                throw throwables;
+            }
+        } catch (SQLException throwables) {
+            metrics.failed(Operation.REPLACE_TEAMS_FOR_USER, start);
+            throw new DBException("Cannot replace teams for user " + user.getLogin(), throwables);
+        }
+        for (Integer teamId : removed) {
+            changes.publish(ChangeEvent.Type.MEMBERSHIP_REMOVED, user.getId(), teamId, null);
+        }
+        for (Team team : added) {
+            changes.publish(ChangeEvent.Type.MEMBERSHIP_ADDED, user.getId(), team.getId(), null);
+        }
+        markWrite();
+        metrics.completed(Operation.REPLACE_TEAMS_FOR_USER, start, added.size() + removed.size());
         return true;
     }
 
+    /**
+     * Like {@link #setTeamsForUser} but memberships that already exist are skipped instead of
+     * failing the transaction. The user row is locked, the current memberships are read, and the
+     * missing ones are written with {@link Dialect#upsertMembership()}, which also absorbs rows
+     * inserted meanwhile by writers that do not lock. Only rows reported as inserted are published.
+     */
+    public boolean addTeamsForUser(User user, Team... teams) throws DBException {
+        if (user == null) throw new DBException("User is null", new NullPointerException());
+        Map<Integer, Team> wanted = teamsById(teams);
+        long start = metrics.start();
+        List<Team> added = new ArrayList<>();
+        try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                lockUser(connection, user.getId());
+                List<Integer> current = findUserTeamIds(connection, user.getId());
+                List<Integer> teamIds = new ArrayList<>();
+                for (Integer teamId : wanted.keySet()) {
+                    if (!current.contains(teamId)) {
+                        teamIds.add(teamId);
+                    }
+                }
+                Dialect dialect = config.getDialect();
+                int[] counts = executeForTeams(connection, dialect.upsertMembership(),
+                        dialect.upsertMembershipPairs(), user.getId(), teamIds);
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] != 0) {
+                        added.add(wanted.get(teamIds.get(i)));
+                    }
+                }
+                commit(connection, index -> {
+                    for (Team team : wanted.values()) {
+                        index.addMembership(user.getId(), user.getLogin(), team.getId(), team.getName());
+                    }
+                });
+            } catch (SQLException throwables) {
+                connection.rollback();
+                throw throwables;
+            }
+        } catch (SQLException throwables) {
+            metrics.failed(Operation.ADD_TEAMS_FOR_USER, start);
+            throw new DBException("Cannot add teams for user " + user.getLogin(), throwables);
+        }
+        for (Team team : added) {
+            changes.publish(ChangeEvent.Type.MEMBERSHIP_ADDED, user.getId(), team.getId(), null);
+        }
+        markWrite();
+        metrics.completed(Operation.ADD_TEAMS_FOR_USER, start, added.size());
+        return true;
+    }
+
+    /**
+     * Write-behind variant of {@link #setTeamsForUser}: the pairs are queued and committed by a
+     * background writer in large batches. Unlike setTeamsForUser there is no all-or-nothing
+     * guarantee across the given teams; the returned future fails if any pair was rejected.
+     */
+    public CompletableFuture<Void> enqueueTeamsForUser(User user, Team... teams) throws DBException {
+        if (user == null) throw new DBException("User is null", new NullPointerException());
+        for (Team team : teams) {
+            if (team == null) throw new DBException("Team is null", new NullPointerException());
+        }
+        if (membershipIndex != null) {
+            membershipIndex.declare(user, teams);
+        }
+        MembershipWriteBehind writer = membershipWriter();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[teams.length];
+        for (int i = 0; i < teams.length; i++) {
+            futures[i] = writer.enqueue(user.getId(), teams[i].getId());
+        }
+        if (replicas.length == 0) {
+            return CompletableFuture.allOf(futures);
+        }
+        // the read-your-writes window of the caller starts when the rows are committed
+        long[] callerWrite = lastWrite.get();
+        return CompletableFuture.allOf(futures)
+                .whenComplete((ignored, failure) -> callerWrite[0] = nanoClock.getAsLong());
+    }
+
+    /**
+     * Blocks until every membership queued by {@link #enqueueTeamsForUser} so far is committed.
+     */
+    public void flushMemberships() throws DBException {
+        MembershipWriteBehind writer;
+        synchronized (this) {
+            writer = membershipWriter;
+        }
+        if (writer != null) {
+            writer.flush();
+            markWrite();
+        }
+    }
+
+    void insertMemberships(int[] userIds, int[] teamIds) throws DBException {
+        long start = metrics.start();
+        int batchSize = config.getBatchSize();
+        try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_TEAMS_FOR_USER)) {
+                for (int i = 0; i < userIds.length; i++) {
+                    statement.setInt(1, userIds[i]);
+                    statement.setInt(2, teamIds[i]);
+                    statement.addBatch();
+                    if ((i + 1) % batchSize == 0) {
+                        statement.executeBatch();
+                    }
+                }
+                statement.executeBatch();
+                commit(connection, index -> index.addMemberships(userIds, teamIds));
+            } catch (SQLException throwables) {
+                connection.rollback();
+                throw throwables;
+            }
+        } catch (SQLException throwables) {
+            metrics.failed(Operation.INSERT_MEMBERSHIPS, start);
+            throw new DBException("Cannot insert " + userIds.length + " memberships", throwables);
+        }
+        for (int i = 0; i < userIds.length; i++) {
+            changes.publish(ChangeEvent.Type.MEMBERSHIP_ADDED, userIds[i], teamIds[i], null);
+        }
+        markWrite();
+        metrics.completed(Operation.INSERT_MEMBERSHIPS, start, userIds.length);
+    }
+
     public List<Team> getUserTeams(User user) throws DBException {
+        long start = metrics.start();
+        if (membershipIndex != null) {
+            List<Team> indexed = indexedTeamsOf(Operation.GET_USER_TEAMS, user.getId(), start);
+            if (indexed != null) {
+                metrics.completed(Operation.GET_USER_TEAMS, start, indexed.size());
+                return indexed;
+            }
+        }
         List<Team> teamList = new ArrayList<>();
-        try (Connection connection = DriverManager.getConnection(getUrl());
+        try (Connection connection = getReadConnection();
              PreparedStatement statement = connection.prepareStatement(FIND_USER_TEAMS);
         ) {
             statement.setInt(1, user.getId());
             ResultSet rs = statement.executeQuery();
+            RowMapper<Team> rows = teamMapper.forQuery(FIND_USER_TEAMS, rs);
             while (rs.next()) {
-                teamList.add(mapTeamByTeamId(rs));
+                teamList.add(rows.map(rs));
             }
         } catch (SQLException throwables) {
-            throwables.printStackTrace();
+            metrics.failed(Operation.GET_USER_TEAMS, start);
+            throw new DBException("Cannot get teams of user " + user.getLogin(), throwables);
         }
+        metrics.completed(Operation.GET_USER_TEAMS, start, teamList.size());
         return teamList;
     }
 
+    public List<User> getTeamUsers(Team team) throws DBException {
+        long start = metrics.start();
+        if (membershipIndex != null) {
+            try {
+                membershipIndex.ensureLoaded();
+            } catch (DBException e) {
+                metrics.failed(Operation.GET_TEAM_USERS, start);
+                throw e;
+            }
+            List<User> indexed = membershipIndex.usersOf(team.getId());
+            if (indexed != null) {
+                metrics.completed(Operation.GET_TEAM_USERS, start, indexed.size());
+                return indexed;
+            }
+        }
+        List<User> userList = new ArrayList<>();
+        try (Connection connection = getReadConnection();
+             PreparedStatement statement = connection.prepareStatement(FIND_TEAM_USERS);
+        ) {
+            statement.setInt(1, team.getId());
+            ResultSet rs = statement.executeQuery();
+            RowMapper<User> rows = userMapper.forQuery(FIND_TEAM_USERS, rs);
+            while (rs.next()) {
+                userList.add(rows.map(rs));
+            }
+        } catch (SQLException throwables) {
+            metrics.failed(Operation.GET_TEAM_USERS, start);
+            throw new DBException("Cannot get users of team " + team.getName(), throwables);
+        }
+        metrics.completed(Operation.GET_TEAM_USERS, start, userList.size());
+        return userList;
+    }
+
+    public int countMembers(Team team) throws DBException {
+        return count(Operation.COUNT_MEMBERS, COUNT_MEMBERS, team.getId(), false);
+    }
+
+    public int countTeams(User user) throws DBException {
+        return count(Operation.COUNT_TEAMS, COUNT_TEAMS, user.getId(), true);
+    }
+
+    public Map<User, List<Team>> getTeamsForUsers(Collection<User> users) throws DBException {
+        long start = metrics.start();
+        int rows = 0;
+        Map<Integer, List<Team>> teamsById = new HashMap<>();
+        List<Integer> ids = new ArrayList<>(users.size());
+        for (User user : users) {
+            if (teamsById.putIfAbsent(user.getId(), new ArrayList<>()) == null) {
+                ids.add(user.getId());
+            }
+        }
+        if (membershipIndex != null) {
+            List<Integer> missing = new ArrayList<>();
+            for (Integer id : ids) {
+                List<Team> indexed = indexedTeamsOf(Operation.GET_TEAMS_FOR_USERS, id, start);
+                if (indexed == null) {
+                    missing.add(id);
+                } else {
+                    teamsById.put(id, indexed);
+                    rows += indexed.size();
+                }
+            }
+            ids = missing;
+        }
+        if (!ids.isEmpty()) {
+            try (Connection connection = getReadConnection()) {
+                // one round trip unless the id list exceeds what a dialect accepts in a single IN list
+                for (int from = 0; from < ids.size(); from += MAX_IN_PARAMETERS) {
+                    List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + MAX_IN_PARAMETERS));
+                    String sql = String.format(FIND_TEAMS_FOR_USERS, placeholders(chunk.size()));
+                    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                        for (int i = 0; i < chunk.size(); i++) {
+                            statement.setInt(i + 1, chunk.get(i));
+                        }
+                        ResultSet rs = statement.executeQuery();
+                        RowMapper<Team> teamRows = teamMapper.forQuery(FIND_TEAMS_FOR_USERS, rs);
+                        while (rs.next()) {
+                            teamsById.get(rs.getInt(1)).add(teamRows.map(rs));
+                            rows++;
+                        }
+                    }
+                }
+            } catch (SQLException throwables) {
+                metrics.failed(Operation.GET_TEAMS_FOR_USERS, start);
+                throw new DBException("Cannot get teams of users", throwables);
+            }
+        }
+
+        Map<User, List<Team>> result = new LinkedHashMap<>();
+        for (User user : users) {
+            result.put(user, teamsById.get(user.getId()));
+        }
+        metrics.completed(Operation.GET_TEAMS_FOR_USERS, start, rows);
+        return result;
+    }
+
     public boolean updateTeam(Team team) throws DBException {
-        try (Connection con = DriverManager.getConnection(getUrl());
+        long start = metrics.start();
+        int updated;
+        try (Connection con = getConnection();
              PreparedStatement statement = con.prepareStatement(UPDATE_TEAM);
         ) {
             statement.setString(1, team.getName());
             statement.setInt(2, team.getId());
-            statement.executeUpdate();
+            updated = statement.executeUpdate();
         } catch (SQLException e) {
-            e.printStackTrace();
+            metrics.failed(Operation.UPDATE_TEAM, start);
+            throw new DBException("Cannot update team " + team.getName(), e);
+        } finally {
+            teamCache.invalidate(team.getId());
+            teamCache.invalidate(team.getName());
+            if (registry != null) {
+                registry.removeTeam(team.getId());
+            }
+        }
+        if (updated > 0) {
+            if (membershipIndex != null) {
+                membershipIndex.renameTeam(team.getId(), team.getName());
+            }
+            changes.publish(ChangeEvent.Type.TEAM_UPDATED, 0, team.getId(), team.getName());
+            markWrite();
         }
+        metrics.completed(Operation.UPDATE_TEAM, start, updated);
         return true;
     }
 
-    private String getUrl() {
-        String url = null;
-        Properties properties = new Properties();
+    @Override
+    public void close() {
+        MembershipWriteBehind writer;
+        synchronized (this) {
+            writer = membershipWriter;
+            membershipWriter = null;
+        }
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (DBException e) {
+                LOG.log(Level.WARNING, "Cannot flush queued memberships on close", e);
+            }
+        }
+        changes.close();
+        if (userLookups != null) {
+            userLookups.close();
+            teamLookups.close();
+        }
+        synchronized (this) {
+            if (watcher != null) {
+                try {
+                    watcher.close();
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "Cannot stop the configuration watcher", e);
+                }
+                watcher = null;
+            }
+        }
+        if (slowQueries != null) {
+            slowQueries.close();
+        }
+        if (mbeanName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+            } catch (JMException e) {
+                LOG.log(Level.WARNING, "Cannot unregister " + mbeanName, e);
+            }
+        }
+        pool.close();
+        for (ConnectionPool replica : replicas) {
+            replica.close();
+        }
+    }
+
+    private synchronized MembershipWriteBehind membershipWriter() {
+        if (membershipWriter == null) {
+            AppConfig config = this.config;
+            membershipWriter = new MembershipWriteBehind(this,
+                    config.getWriteBehindQueueCapacity(),
+                    config.getWriteBehindBatchSize(),
+                    config.getWriteBehindFlushIntervalMillis(),
+                    config.getPoolSettings().getAcquireTimeoutMillis());
+        }
+        return membershipWriter;
+    }
+
+    /**
+     * Called after memberships were written without going through this manager.
+     */
+    void membershipsChanged() {
+        if (membershipIndex != null) {
+            membershipIndex.invalidate();
+        }
+    }
+
+    /**
+     * A connection to the primary, for writes and for reads that must see them.
+     */
+    Connection getConnection() throws SQLException {
+        return acquire(pool);
+    }
+
+    /**
+     * A connection for a read: the next replica in round-robin order, skipping replicas that
+     * cannot hand out a connection without waiting. Reads go to the primary when there are no
+     * replicas, when no replica is available, or within {@code replica.stickyMillis} of a write by
+     * this thread. Falling back to the primary is counted as {@link Operation#REPLICA_FALLBACK}.
+     */
+    Connection getReadConnection() throws SQLException {
+        ConnectionPool[] replicas = this.replicas;
+        if (replicas.length == 0 || readsFromPrimary()) {
+            return acquire(pool);
+        }
+        long start = metrics.start();
+        int first = Math.floorMod(nextReplica.getAndIncrement(), replicas.length);
+        for (int i = 0; i < replicas.length; i++) {
+            int replica = (first + i) % replicas.length;
+            try {
+                return acquire(replicas[replica], false);
+            } catch (SQLTransientConnectionException e) {
+                LOG.log(Level.FINE, "Replica " + replica + " has no free connection", e);
+            } catch (SQLException e) {
+                LOG.log(Level.WARNING, "Cannot connect to replica " + replica, e);
+            }
+        }
+        metrics.completed(Operation.REPLICA_FALLBACK, start, 0);
+        return acquire(pool);
+    }
+
+    /**
+     * Starts the read-your-writes window of the calling thread.
+     */
+    void markWrite() {
+        if (replicas.length > 0) {
+            lastWrite.get()[0] = nanoClock.getAsLong();
+        }
+    }
+
+    private boolean readsFromPrimary() {
+        if (replicas.length == 0) {
+            return false;
+        }
+        long wroteAt = lastWrite.get()[0];
+        return wroteAt != NO_WRITE
+                && nanoClock.getAsLong() - wroteAt < TimeUnit.MILLISECONDS.toNanos(config.getReplicaStickyMillis());
+    }
+
+    /**
+     * Names SQL run through this manager by other classes in the slow-query log, if it is enabled.
+     */
+    void registerQueries(Map<String, String> sqlByName) {
+        if (slowQueries != null) {
+            slowQueries.register(sqlByName);
+        }
+    }
+
+    private Connection acquire(ConnectionPool pool) throws SQLException {
+        return acquire(pool, true);
+    }
+
+    /**
+     * @param wait whether to wait up to {@code pool.acquireTimeoutMillis} for a free connection
+     */
+    private Connection acquire(ConnectionPool pool, boolean wait) throws SQLException {
+        long start = metrics.start();
+        long acquireStart = slowQueries == null ? 0 : System.nanoTime();
+        Connection connection = wait ? pool.getConnection() : pool.tryGetConnection();
+        metrics.acquired(start);
+        return slowQueries == null ? connection : slowQueries.wrap(connection, System.nanoTime() - acquireStart);
+    }
+
+    synchronized void watch(Path file) {
+        if (watcher != null || !config.isWatchEnabled()) {
+            return;
+        }
         try {
-            properties.load(new FileInputStream("app.properties"));
-            url = properties.getProperty("connection.url");
+            watcher = new ConfigWatcher(file, this::reload);
         } catch (IOException e) {
-            e.printStackTrace();
+            LOG.log(Level.WARNING, "Cannot watch " + file + ", configuration changes need a restart", e);
         }
-        return url;
     }
 
-    private User mapUser(ResultSet rs) throws SQLException {
-        User user = User.createUser(rs.getString("login"));
-        user.setId(rs.getInt("id"));
-        return user;
+    /**
+     * Applies a changed configuration. New connection settings replace the pools and drop
+     * everything cached from the old database; new cache settings replace the caches, which
+     * also resets their statistics.
+     */
+    void reload(AppConfig newConfig) {
+        AppConfig oldConfig = config;
+        if (!newConfig.sameConnectionSettings(oldConfig)) {
+            ConnectionPool oldPool = pool;
+            ConnectionPool[] oldReplicas = replicas;
+            pool = new ConnectionPool(newConfig.getUrl(), newConfig.getPoolSettings());
+            replicas = createReplicas(newConfig);
+            if (registry != null) {
+                registry.clear();
+            }
+            userCache.clear();
+            teamCache.clear();
+            oldPool.close();
+            for (ConnectionPool replica : oldReplicas) {
+                replica.close();
+            }
+            membershipsChanged();
+        }
+        if (!newConfig.sameCacheSettings(oldConfig)) {
+            userCache = createCache(newConfig);
+            teamCache = createCache(newConfig);
+        }
+        config = newConfig;
     }
 
-    private Team mapTeam(ResultSet rs) throws SQLException {
-        Team team = Team.createTeam(rs.getString("name"));
-        team.setId(rs.getInt("id"));
-        return team;
+    private static AppConfig loadConfig(Path file) {
+        try {
+            return AppConfig.load(file);
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Cannot read " + file + ", using defaults", e);
+            return AppConfig.of(new Properties());
+        }
+    }
+
+    /**
+     * Inserts one row per entity in a single transaction and returns the generated ids in input order.
+     * Where the driver cannot report a key per batched row the rows are executed one by one instead,
+     * still on one connection and in one transaction.
+     */
+    private <T> int[] insertAll(Connection connection, String sql, Collection<T> entities,
+                                Function<T, String> column) throws SQLException {
+        int[] ids = new int[entities.size()];
+        int batchSize = config.getBatchSize();
+        boolean batch = config.getDialect().supportsBatchGeneratedKeys();
+        connection.setAutoCommit(false);
+        try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            int done = 0;
+            int pending = 0;
+            for (T entity : entities) {
+                statement.setString(1, column.apply(entity));
+                if (!batch) {
+                    statement.executeUpdate();
+                    done = readGeneratedKeys(statement, ids, done);
+                    continue;
+                }
+                statement.addBatch();
+                if (++pending == batchSize) {
+                    statement.executeBatch();
+                    done = readGeneratedKeys(statement, ids, done);
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                statement.executeBatch();
+                done = readGeneratedKeys(statement, ids, done);
+            }
+            if (done != ids.length) {
+                throw new SQLException("Expected " + ids.length + " generated ids, got " + done);
+            }
+            connection.commit();
+        } catch (SQLException throwables) {
+            connection.rollback();
+            throw throwables;
+        }
+        return ids;
+    }
+
+    private static int readGeneratedKeys(Statement statement, int[] ids, int offset) throws SQLException {
+        try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+            while (generatedKeys.next() && offset < ids.length) {
+                ids[offset++] = generatedKeys.getInt(1);
+            }
+        }
+        return offset;
     }
 
-    private Team mapTeamByTeamId(ResultSet rs) throws SQLException {
-        try (Connection connection = DriverManager.getConnection(getUrl());
-             PreparedStatement statement = connection.prepareStatement(FIND_TEAM_BY_ID);
+    private <T> void findByKeys(Operation operation, String sql, Collection<String> keys, EntityMapper<T> mapper,
+                                Consumer<T> sink) throws DBException {
+        long start = metrics.start();
+        if (keys.isEmpty()) {
+            metrics.completed(operation, start, 0);
+            return;
+        }
+        int rows = 0;
+        List<String> keyList = new ArrayList<>(keys);
+        try (Connection connection = getReadConnection()) {
+            for (int from = 0; from < keyList.size(); from += MAX_IN_PARAMETERS) {
+                List<String> chunk = keyList.subList(from, Math.min(keyList.size(), from + MAX_IN_PARAMETERS));
+                try (PreparedStatement statement = connection.prepareStatement(
+                        String.format(sql, placeholders(chunk.size())))) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        statement.setString(i + 1, chunk.get(i));
+                    }
+                    ResultSet rs = statement.executeQuery();
+                    RowMapper<T> rowMapper = mapper.forQuery(sql, rs);
+                    while (rs.next()) {
+                        sink.accept(rowMapper.map(rs));
+                        rows++;
+                    }
+                }
+            }
+        } catch (SQLException throwables) {
+            metrics.failed(operation, start);
+            throw new DBException("Cannot look up " + keys.size() + " keys", throwables);
+        }
+        metrics.completed(operation, start, rows);
+    }
+
+    private static <V> V await(CompletableFuture<V> future) throws DBException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DBException("Interrupted while waiting for a lookup", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DBException) {
+                throw (DBException) e.getCause();
+            }
+            throw new DBException("Lookup failed", e.getCause());
+        }
+    }
+
+    private <T> List<T> findPage(Operation operation, String sql, int afterId, int limit, EntityMapper<T> mapper)
+            throws DBException {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page limit must be positive: " + limit);
+        }
+        long start = metrics.start();
+        Dialect dialect = config.getDialect();
+        List<T> page = new ArrayList<>(Math.min(limit, 1024));
+        try (Connection connection = getReadConnection();
+             PreparedStatement statement = connection.prepareStatement(dialect.limit(sql));
         ) {
-            statement.setInt(1, rs.getInt("team_id"));
-            ResultSet resultSet = statement.executeQuery();
-            resultSet.next();
-            return mapTeam(resultSet);
+            statement.setInt(1, afterId);
+            if (dialect.hasLimitParameter()) {
+                statement.setInt(2, limit);
+            }
+            statement.setMaxRows(limit);
+            ResultSet rs = statement.executeQuery();
+            RowMapper<T> rows = mapper.forQuery(sql, rs);
+            while (rs.next()) {
+                page.add(rows.map(rs));
+            }
+        } catch (SQLException throwables) {
+            metrics.failed(operation, start);
+            throw new DBException("Cannot read page after id " + afterId, throwables);
+        }
+        metrics.completed(operation, start, page.size());
+        return page;
+    }
+
+    /**
+     * The operation is recorded when the stream is closed, with the number of rows actually read.
+     */
+    private <T> Stream<T> stream(Operation operation, String sql, EntityMapper<T> mapper) throws DBException {
+        AppConfig config = this.config;
+        long start = metrics.start();
+        long[] count = new long[1];
+        Connection connection = null;
+        PreparedStatement statement = null;
+        try {
+            connection = getReadConnection();
+            statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(config.getDialect().streamingFetchSize(config.getUrl(), config.getFetchSize()));
+            ResultSet rs = statement.executeQuery();
+            RowMapper<T> rowMapper = mapper.forQuery(sql, rs);
+            Spliterator<T> rows = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+                    Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super T> action) {
+                    try {
+                        if (!rs.next()) {
+                            return false;
+                        }
+                        action.accept(rowMapper.map(rs));
+                        count[0]++;
+                        return true;
+                    } catch (SQLException throwables) {
+                        throw new UncheckedDBException(new DBException("Cannot read rows", throwables));
+                    }
+                }
+            };
+            AutoCloseable[] resources = {rs, statement, connection};
+            return StreamSupport.stream(rows, false).onClose(() -> {
+                try {
+                    closeAll(resources);
+                } catch (UncheckedDBException e) {
+                    metrics.failed(operation, start);
+                    throw e;
+                }
+                metrics.completed(operation, start, count[0]);
+            });
+        } catch (SQLException throwables) {
+            metrics.failed(operation, start);
+            closeAll(statement, connection);
+            throw new DBException("Cannot stream rows", throwables);
+        }
+    }
+
+    private int count(Operation operation, String sql, int id, boolean byUser) throws DBException {
+        long start = metrics.start();
+        if (membershipIndex != null) {
+            try {
+                membershipIndex.ensureLoaded();
+            } catch (DBException e) {
+                metrics.failed(operation, start);
+                throw e;
+            }
+            int indexed = byUser ? membershipIndex.countTeams(id) : membershipIndex.countMembers(id);
+            if (indexed >= 0) {
+                metrics.completed(operation, start, 1);
+                return indexed;
+            }
+        }
+        int count;
+        try (Connection connection = getReadConnection();
+             PreparedStatement statement = connection.prepareStatement(sql);
+        ) {
+            statement.setInt(1, id);
+            ResultSet rs = statement.executeQuery();
+            rs.next();
+            count = rs.getInt(1);
+        } catch (SQLException throwables) {
+            metrics.failed(operation, start);
+            throw new DBException("Cannot count memberships of " + id, throwables);
+        }
+        metrics.completed(operation, start, 1);
+        return count;
+    }
+
+    private List<Team> indexedTeamsOf(Operation operation, int userId, long start) throws DBException {
+        try {
+            membershipIndex.ensureLoaded();
+        } catch (DBException e) {
+            metrics.failed(operation, start);
+            throw e;
+        }
+        return membershipIndex.teamsOf(userId);
+    }
+
+    private void loadMembershipIndex(MembershipIndex.Sink index) throws DBException {
+        AppConfig config = this.config;
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(FIND_MEMBERSHIPS,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        ) {
+            statement.setFetchSize(config.getDialect().streamingFetchSize(config.getUrl(), config.getFetchSize()));
+            ResultSet rs = statement.executeQuery();
+            while (rs.next()) {
+                index.addMembership(rs.getInt(1), rs.getString(2), rs.getInt(3), rs.getString(4));
+            }
+        } catch (SQLException throwables) {
+            throw new DBException("Cannot load membership index", throwables);
+        }
+    }
+
+    private static void closeAll(AutoCloseable... resources) {
+        Exception failure = null;
+        for (AutoCloseable resource : resources) {
+            if (resource == null) {
+                continue;
+            }
+            try {
+                resource.close();
+            } catch (Exception e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw new UncheckedDBException(new DBException("Cannot release resources", failure));
+        }
+    }
+
+    private ObjectName registerMBean() {
+        DBManagerMXBean bean = new DBManagerMXBean() {
+            @Override
+            public MetricsSnapshot getMetrics() {
+                return DBManager.this.getMetrics();
+            }
+
+            @Override
+            public void resetMetrics() {
+                DBManager.this.resetMetrics();
+            }
+        };
+        try {
+            ObjectName name = new ObjectName("com.epam.rd.java.basic.task7:type=DBManager,name="
+                    + INSTANCES.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(bean, name);
+            return name;
+        } catch (JMException e) {
+            LOG.log(Level.WARNING, "Cannot register the DBManager MBean, metrics are not exposed over JMX", e);
+            return null;
+        }
+    }
+
+    private static Map<Integer, Team> teamsById(Team... teams) throws DBException {
+        Map<Integer, Team> byId = new LinkedHashMap<>();
+        for (Team team : teams) {
+            if (team == null) throw new DBException("Team is null", new NullPointerException());
+            byId.putIfAbsent(team.getId(), team);
+        }
+        return byId;
+    }
+
+    private static List<Integer> ids(List<Team> teams) {
+        List<Integer> ids = new ArrayList<>(teams.size());
+        for (Team team : teams) {
+            ids.add(team.getId());
+        }
+        return ids;
+    }
+
+    private static List<Integer> findUserTeamIds(Connection connection, int userId) throws SQLException {
+        List<Integer> teamIds = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(FIND_USER_TEAM_IDS)) {
+            statement.setInt(1, userId);
+            ResultSet rs = statement.executeQuery();
+            while (rs.next()) {
+                teamIds.add(rs.getInt(1));
+            }
+        }
+        return teamIds;
+    }
+
+    /**
+     * Commits a transaction that changed memberships and applies the change to the membership
+     * index, if enabled, before any later commit can apply its own. Index updates then follow
+     * commit order, so an add that committed before a delete cannot reach the index after it and
+     * leave a membership the database no longer has. Only the commit is serialized: the
+     * statements before it keep running concurrently, and a commit does not wait for row locks.
+     */
+    private void commit(Connection connection, Consumer<MembershipIndex> indexUpdate) throws SQLException {
+        if (membershipIndex == null) {
+            connection.commit();
+            return;
+        }
+        synchronized (indexOrder) {
+            connection.commit();
+            indexUpdate.accept(membershipIndex);
+        }
+    }
+
+    /**
+     * Takes the row lock of the user until the transaction ends, so membership changes that read
+     * before they write see each other's result. A no-op update rather than {@code SELECT ... FOR
+     * UPDATE}, whose lock Derby releases under read committed once the cursor moves on.
+     */
+    private static void lockUser(Connection connection, int userId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(LOCK_USER)) {
+            statement.setInt(1, userId);
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Runs a (user_id, team_id) statement once per team in batches of {@code batch.size}, binding
+     * the pair {@code repeats} times, and returns the update count of each team, with
+     * {@code SUCCESS_NO_INFO} counted as one row.
+     */
+    private int[] executeForTeams(Connection connection, String sql, int repeats, int userId, List<Integer> teamIds)
+            throws SQLException {
+        int[] changed = new int[teamIds.size()];
+        if (teamIds.isEmpty()) {
+            return changed;
+        }
+        int batchSize = config.getBatchSize();
+        int done = 0;
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < teamIds.size(); i++) {
+                for (int pair = 0; pair < repeats; pair++) {
+                    statement.setInt(2 * pair + 1, userId);
+                    statement.setInt(2 * pair + 2, teamIds.get(i));
+                }
+                statement.addBatch();
+                if ((i + 1) % batchSize == 0) {
+                    done = updateCounts(statement.executeBatch(), changed, done);
+                }
+            }
+            updateCounts(statement.executeBatch(), changed, done);
+        }
+        return changed;
+    }
+
+    private static int updateCounts(int[] counts, int[] changed, int offset) {
+        for (int count : counts) {
+            changed[offset++] = count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+        }
+        return offset;
+    }
+
+    private static ConnectionPool[] createReplicas(AppConfig config) {
+        List<String> urls = config.getReplicaUrls();
+        ConnectionPool[] replicas = new ConnectionPool[urls.size()];
+        for (int i = 0; i < replicas.length; i++) {
+            replicas[i] = new ConnectionPool(urls.get(i), config.getPoolSettings());
+        }
+        return replicas;
+    }
+
+    private static EntityCache createCache(AppConfig config) {
+        return config.isCacheEnabled()
+                ? new EntityCache(config.getCacheMaxSize(), config.getCacheTtlMillis())
+                : EntityCache.disabled();
+    }
+
+    private static Map<String, List<String>> byMatchKey(Dialect dialect, Collection<String> keys) {
+        Map<String, List<String>> byMatchKey = new HashMap<>();
+        for (String key : keys) {
+            if (key != null) {
+                byMatchKey.computeIfAbsent(dialect.matchKey(key), k -> new ArrayList<>(1)).add(key);
+            }
+        }
+        return byMatchKey;
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder(count * 3);
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.toString();
+    }
+
+    private static EntityMapper<User> userMapper(EntityRegistry registry) {
+        if (registry == null) {
+            return EntityMapper.builder(User.class).factory("createUser", "login").set("id").build();
+        }
+        return EntityMapper.builder(User.class)
+                .factory(registryFactory(registry, "user", User.class), "id", "login")
+                .build();
+    }
+
+    private static EntityMapper<Team> teamMapper(EntityRegistry registry) {
+        if (registry == null) {
+            return EntityMapper.builder(Team.class).factory("createTeam", "name").set("id").build();
+        }
+        return EntityMapper.builder(Team.class)
+                .factory(registryFactory(registry, "team", Team.class), "id", "name")
+                .build();
+    }
+
+    private static MethodHandle registryFactory(EntityRegistry registry, String name, Class<?> type) {
+        try {
+            return MethodHandles.publicLookup()
+                    .findVirtual(EntityRegistry.class, name, MethodType.methodType(type, int.class, String.class))
+                    .bindTo(registry);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No EntityRegistry." + name + "(int, String)", e);
         }
     }
 }
@@ -0,0 +1,93 @@
+package com.epam.rd.java.basic.task7.db;
+
+import java.util.Locale;
+
+/**
+ * SQL and driver differences between the databases DBManager runs against.
+ */
+public enum Dialect {
+
+    MYSQL(true, " LIMIT ?", "INSERT INTO users_teams (user_id, team_id) VALUES (?, ?)"
+            + " ON DUPLICATE KEY UPDATE team_id = team_id", 1),
+    DERBY(false, " FETCH FIRST ? ROWS ONLY", "MERGE INTO users_teams ut USING SYSIBM.SYSDUMMY1"
+            + " ON ut.user_id = ? AND ut.team_id = ? WHEN NOT MATCHED THEN INSERT (user_id, team_id) VALUES (?, ?)", 2),
+    GENERIC(false, "", "INSERT INTO users_teams (user_id, team_id) VALUES (?, ?)", 1);
+
+    private final boolean batchGeneratedKeys;
+    private final String limitClause;
+    private final String upsertMembership;
+    private final int upsertMembershipPairs;
+
+    Dialect(boolean batchGeneratedKeys, String limitClause, String upsertMembership, int upsertMembershipPairs) {
+        this.batchGeneratedKeys = batchGeneratedKeys;
+        this.limitClause = limitClause;
+        this.upsertMembership = upsertMembership;
+        this.upsertMembershipPairs = upsertMembershipPairs;
+    }
+
+    public static Dialect of(String url) {
+        if (url == null) {
+            return GENERIC;
+        }
+        if (url.startsWith("jdbc:mysql:")) {
+            return MYSQL;
+        }
+        if (url.startsWith("jdbc:derby:")) {
+            return DERBY;
+        }
+        return GENERIC;
+    }
+
+    /**
+     * Whether {@code getGeneratedKeys()} after {@code executeBatch()} returns one key per batched row.
+     * Derby only reports the key of the last row.
+     */
+    public boolean supportsBatchGeneratedKeys() {
+        return batchGeneratedKeys;
+    }
+
+    /**
+     * Appends the row limit clause to an ordered query. When {@link #hasLimitParameter()} is true
+     * the limit is bound as the last parameter, otherwise callers rely on {@code setMaxRows}.
+     */
+    public String limit(String sql) {
+        return sql + limitClause;
+    }
+
+    public boolean hasLimitParameter() {
+        return !limitClause.isEmpty();
+    }
+
+    /**
+     * Inserts a (user_id, team_id) row, leaving an existing one as it is and failing on any other
+     * error. Binds the pair {@link #upsertMembershipPairs()} times. Databases without an upsert get
+     * a plain insert, which fails on an existing row.
+     */
+    public String upsertMembership() {
+        return upsertMembership;
+    }
+
+    public int upsertMembershipPairs() {
+        return upsertMembershipPairs;
+    }
+
+    /**
+     * The form under which the database compares a login or team name, so rows can be matched
+     * back to the keys they were looked up with. MySQL's default collations ignore case.
+     */
+    public String matchKey(String value) {
+        return this == MYSQL ? value.toLowerCase(Locale.ROOT) : value;
+    }
+
+    /**
+     * Fetch size that makes the driver stream rows instead of buffering the whole result.
+     * Connector/J only honours a positive fetch size with useCursorFetch=true and otherwise
+     * streams row by row when given Integer.MIN_VALUE.
+     */
+    public int streamingFetchSize(String url, int fetchSize) {
+        if (this == MYSQL && !url.contains("useCursorFetch=true")) {
+            return Integer.MIN_VALUE;
+        }
+        return fetchSize;
+    }
+}
@@ -0,0 +1,271 @@
+package com.epam.rd.java.basic.task7.db;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps rows to entities of one type without per-row column lookups by name. The mapping is
+ * described once: a factory (static method or constructor) that takes some columns, then setters
+ * for the others, found by name ({@code user_id} → {@code setUserId}). For each query the column
+ * labels are matched against the result set metadata once and the readers, factory and setters
+ * are composed into a single method handle that reads every column by index; that handle is
+ * cached under the query's SQL constant, so later executions of the same query skip even the
+ * metadata lookup.
+ * <pre>
+ * EntityMapper&lt;Team&gt; teams = EntityMapper.builder(Team.class).factory("createTeam", "name").set("id").build();
+ * </pre>
+ */
+public final class EntityMapper<T> {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+    private static final MethodType ROW_TYPE = MethodType.methodType(Object.class, ResultSet.class);
+
+    private final Class<T> type;
+    private final MethodHandle factory;
+    private final String[] factoryColumns;
+    private final MethodHandle[] setters;
+    private final String[] setterColumns;
+    private final Map<String, RowMapper<T>> byQuery = new ConcurrentHashMap<>();
+
+    private EntityMapper(Builder<T> builder) {
+        this.type = builder.type;
+        this.factory = builder.factory;
+        this.factoryColumns = builder.factoryColumns;
+        this.setters = builder.setters.toArray(new MethodHandle[0]);
+        this.setterColumns = builder.setterColumns.toArray(new String[0]);
+    }
+
+    public static <T> Builder<T> builder(Class<T> type) {
+        return new Builder<>(type);
+    }
+
+    /**
+     * The row mapper for a result set of {@code sql}. Pass the SQL constant the statement was built
+     * from, not a formatted variant, so that every execution shares one cache entry.
+     */
+    public RowMapper<T> forQuery(String sql, ResultSet rs) throws SQLException {
+        RowMapper<T> mapper = byQuery.get(sql);
+        if (mapper == null) {
+            mapper = compile(rs.getMetaData(), sql);
+            byQuery.putIfAbsent(sql, mapper);
+        }
+        return mapper;
+    }
+
+    private RowMapper<T> compile(ResultSetMetaData metaData, String sql) throws SQLException {
+        String[] labels = new String[metaData.getColumnCount()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = metaData.getColumnLabel(i + 1).toLowerCase(Locale.ROOT);
+        }
+        MethodHandle create = factory;
+        for (int i = 0; i < factoryColumns.length; i++) {
+            create = MethodHandles.filterArguments(create, i,
+                    reader(create.type().parameterType(i), position(labels, factoryColumns[i], sql)));
+        }
+        // (ResultSet, ResultSet, ...) -> T becomes (ResultSet) -> T
+        create = MethodHandles.permuteArguments(create, MethodType.methodType(type, ResultSet.class),
+                new int[factoryColumns.length]);
+
+        // (T, ResultSet) -> T, running each setter on the way
+        MethodHandle populate = MethodHandles.dropArguments(MethodHandles.identity(type), 1, ResultSet.class);
+        for (int i = setters.length - 1; i >= 0; i--) {
+            MethodHandle setter = MethodHandles.filterArguments(setters[i], 1,
+                    reader(setters[i].type().parameterType(1), position(labels, setterColumns[i], sql)));
+            populate = MethodHandles.foldArguments(populate, setter);
+        }
+        MethodHandle row = MethodHandles.foldArguments(populate, create).asType(ROW_TYPE);
+        return new CompiledMapper<>(type, row);
+    }
+
+    private static int position(String[] labels, String column, String sql) throws SQLException {
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i].equals(column)) {
+                return i + 1;
+            }
+        }
+        throw new SQLException("Column " + column + " is not selected by " + sql + ", got "
+                + Arrays.toString(labels));
+    }
+
+    /**
+     * {@code (ResultSet) -> value} reading the column at {@code position} with the typed getter.
+     */
+    private static MethodHandle reader(Class<?> valueType, int position) {
+        try {
+            MethodHandle getter;
+            if (valueType == int.class) {
+                getter = LOOKUP.findVirtual(ResultSet.class, "getInt", MethodType.methodType(int.class, int.class));
+            } else if (valueType == long.class) {
+                getter = LOOKUP.findVirtual(ResultSet.class, "getLong", MethodType.methodType(long.class, int.class));
+            } else if (valueType == boolean.class) {
+                getter = LOOKUP.findVirtual(ResultSet.class, "getBoolean",
+                        MethodType.methodType(boolean.class, int.class));
+            } else if (valueType == double.class) {
+                getter = LOOKUP.findVirtual(ResultSet.class, "getDouble",
+                        MethodType.methodType(double.class, int.class));
+            } else if (valueType == String.class) {
+                getter = LOOKUP.findVirtual(ResultSet.class, "getString",
+                        MethodType.methodType(String.class, int.class));
+            } else {
+                getter = LOOKUP.findVirtual(ResultSet.class, "getObject",
+                        MethodType.methodType(Object.class, int.class, Class.class));
+                getter = MethodHandles.insertArguments(getter, 2, valueType)
+                        .asType(MethodType.methodType(valueType, ResultSet.class, int.class));
+            }
+            return MethodHandles.insertArguments(getter, 1, position);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No ResultSet getter for " + valueType, e);
+        }
+    }
+
+    private static final class CompiledMapper<T> implements RowMapper<T> {
+
+        private final Class<T> type;
+        private final MethodHandle row;
+
+        private CompiledMapper(Class<T> type, MethodHandle row) {
+            this.type = type;
+            this.row = row;
+        }
+
+        @Override
+        public T map(ResultSet rs) throws SQLException {
+            try {
+                return type.cast((Object) row.invokeExact(rs));
+            } catch (SQLException | RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new SQLException("Cannot map row to " + type.getSimpleName(), e);
+            }
+        }
+    }
+
+    public static final class Builder<T> {
+
+        private final Class<T> type;
+        private MethodHandle factory;
+        private String[] factoryColumns;
+        private final List<MethodHandle> setters = new ArrayList<>();
+        private final List<String> setterColumns = new ArrayList<>();
+
+        private Builder(Class<T> type) {
+            this.type = type;
+        }
+
+        /**
+         * Creates entities with the public static method of the entity type that has this name and
+         * takes one parameter per column.
+         */
+        public Builder<T> factory(String methodName, String... columns) {
+            for (Method method : type.getMethods()) {
+                if (method.getName().equals(methodName) && Modifier.isStatic(method.getModifiers())
+                        && method.getParameterCount() == columns.length
+                        && type.isAssignableFrom(method.getReturnType())) {
+                    try {
+                        return factory(LOOKUP.unreflect(method), columns);
+                    } catch (IllegalAccessException e) {
+                        throw new IllegalArgumentException("Cannot access " + method, e);
+                    }
+                }
+            }
+            throw new IllegalArgumentException("No static " + methodName + " with " + columns.length
+                    + " parameters in " + type.getName());
+        }
+
+        /**
+         * Creates entities with the public constructor that takes one parameter per column.
+         */
+        public Builder<T> constructor(String... columns) {
+            for (Constructor<?> constructor : type.getConstructors()) {
+                if (constructor.getParameterCount() == columns.length) {
+                    try {
+                        return factory(LOOKUP.unreflectConstructor(constructor), columns);
+                    } catch (IllegalAccessException e) {
+                        throw new IllegalArgumentException("Cannot access " + constructor, e);
+                    }
+                }
+            }
+            throw new IllegalArgumentException("No public constructor with " + columns.length
+                    + " parameters in " + type.getName());
+        }
+
+        /**
+         * Creates entities with the given handle, which takes one argument per column and returns
+         * the entity; use it to route rows through an instance such as a registry.
+         */
+        public Builder<T> factory(MethodHandle handle, String... columns) {
+            if (handle.type().parameterCount() != columns.length) {
+                throw new IllegalArgumentException("Factory " + handle + " does not take " + columns.length
+                        + " columns");
+            }
+            this.factory = handle.asType(handle.type().changeReturnType(type));
+            this.factoryColumns = lowerCase(columns);
+            return this;
+        }
+
+        /**
+         * Sets each column through the entity's public {@code set<Column>} method.
+         */
+        public Builder<T> set(String... columns) {
+            for (String column : lowerCase(columns)) {
+                setters.add(setter(column));
+                setterColumns.add(column);
+            }
+            return this;
+        }
+
+        public EntityMapper<T> build() {
+            if (factory == null) {
+                throw new IllegalStateException("No factory for " + type.getName());
+            }
+            return new EntityMapper<>(this);
+        }
+
+        private MethodHandle setter(String column) {
+            StringBuilder name = new StringBuilder("set");
+            boolean upper = true;
+            for (char c : column.toCharArray()) {
+                if (c == '_') {
+                    upper = true;
+                } else {
+                    name.append(upper ? Character.toUpperCase(c) : c);
+                    upper = false;
+                }
+            }
+            for (Method method : type.getMethods()) {
+                if (method.getName().equals(name.toString()) && method.getParameterCount() == 1
+                        && !Modifier.isStatic(method.getModifiers())) {
+                    try {
+                        MethodHandle setter = LOOKUP.unreflect(method);
+                        return setter.asType(setter.type().changeParameterType(0, type)
+                                .changeReturnType(void.class));
+                    } catch (IllegalAccessException e) {
+                        throw new IllegalArgumentException("Cannot access " + method, e);
+                    }
+                }
+            }
+            throw new IllegalArgumentException("No " + name + " setter in " + type.getName());
+        }
+
+        private static String[] lowerCase(String[] columns) {
+            String[] lower = new String[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                lower[i] = columns[i].toLowerCase(Locale.ROOT);
+            }
+            return lower;
+        }
+    }
+}
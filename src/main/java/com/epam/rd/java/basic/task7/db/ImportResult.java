@@ -0,0 +1,38 @@
+package com.epam.rd.java.basic.task7.db;
+
+import java.util.concurrent.TimeUnit;
+
+public final class ImportResult {
+
+    private final long rows;
+    private final long skipped;
+    private final long elapsedNanos;
+
+    public ImportResult(long rows, long skipped, long elapsedNanos) {
+        this.rows = rows;
+        this.skipped = skipped;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : rows * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return rows + " rows (" + skipped + " skipped) in " + getElapsedMillis() + " ms, "
+                + String.format("%.0f", getRowsPerSecond()) + " rows/s";
+    }
+}
@@ -0,0 +1,180 @@
+package com.epam.rd.java.basic.task7.db;
+
+import com.epam.rd.java.basic.task7.db.config.AppConfig;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Dumps the user-team membership graph with one joined query. Rows are written straight from the
+ * result set, which is read with the streaming fetch size of the dialect, so at most one fetch
+ * window is held in memory whatever the size of {@code users_teams}.
+ */
+public class MembershipExporter {
+
+    public enum Format {
+
+        /**
+         * {@code user_id,login,team_id,name} with a header line; fields are quoted when needed.
+         */
+        CSV,
+
+        /**
+         * One JSON object per line: {@code {"userId":1,"login":"...","teamId":2,"team":"..."}}.
+         */
+        JSON_LINES
+    }
+
+    private static final String CSV_HEADER = "user_id,login,team_id,name\n";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DBManager dbManager;
+
+    public MembershipExporter(DBManager dbManager) {
+        this.dbManager = dbManager;
+    }
+
+    /**
+     * Writes every membership as UTF-8, gzip-compressed if requested. The stream is finished but
+     * not closed. Returns the number of memberships written.
+     */
+    public long export(OutputStream out, Format format, boolean gzip) throws DBException {
+        try {
+            GZIPOutputStream zip = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : null;
+            Writer writer = new BufferedWriter(new OutputStreamWriter(zip != null ? zip : out,
+                    StandardCharsets.UTF_8), BUFFER_SIZE);
+            long rows = export(writer, format);
+            writer.flush();
+            if (zip != null) {
+                zip.finish();
+            }
+            return rows;
+        } catch (IOException e) {
+            throw new DBException("Cannot export memberships", e);
+        }
+    }
+
+    /**
+     * Writes every membership to the given writer, which is flushed but not closed. Returns the
+     * number of memberships written.
+     */
+    public long export(Writer out, Format format) throws DBException {
+        AppConfig config = dbManager.getConfig();
+        Writer writer = out instanceof BufferedWriter ? out : new BufferedWriter(out, BUFFER_SIZE);
+        long rows = 0;
+        try (Connection connection = dbManager.getReadConnection();
+             PreparedStatement statement = connection.prepareStatement(DBManager.FIND_MEMBERSHIPS,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        ) {
+            statement.setFetchSize(config.getDialect().streamingFetchSize(config.getUrl(), config.getFetchSize()));
+            if (format == Format.CSV) {
+                writer.write(CSV_HEADER);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    if (format == Format.CSV) {
+                        writeCsv(writer, rs);
+                    } else {
+                        writeJson(writer, rs);
+                    }
+                    rows++;
+                }
+            }
+            writer.flush();
+        } catch (SQLException | IOException e) {
+            throw new DBException("Cannot export memberships after " + rows + " rows", e);
+        }
+        return rows;
+    }
+
+    private static void writeCsv(Writer writer, ResultSet rs) throws SQLException, IOException {
+        writer.write(Integer.toString(rs.getInt(1)));
+        writer.write(',');
+        writeCsvField(writer, rs.getString(2));
+        writer.write(',');
+        writer.write(Integer.toString(rs.getInt(3)));
+        writer.write(',');
+        writeCsvField(writer, rs.getString(4));
+        writer.write('\n');
+    }
+
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    private static void writeJson(Writer writer, ResultSet rs) throws SQLException, IOException {
+        writer.write("{\"userId\":");
+        writer.write(Integer.toString(rs.getInt(1)));
+        writer.write(",\"login\":");
+        writeJsonString(writer, rs.getString(2));
+        writer.write(",\"teamId\":");
+        writer.write(Integer.toString(rs.getInt(3)));
+        writer.write(",\"team\":");
+        writeJsonString(writer, rs.getString(4));
+        writer.write("}\n");
+    }
+
+    private static void writeJsonString(Writer writer, String value) throws IOException {
+        if (value == null) {
+            writer.write("null");
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+}
@@ -0,0 +1,244 @@
+package com.epam.rd.java.basic.task7.db;
+
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffers (user_id, team_id) pairs in a bounded queue and writes them to {@code users_teams} from a
+ * background thread in large batched transactions. Each pair's future completes once its row is
+ * committed, or fails with the {@link DBException} that rejected it. A batch rejected for its data
+ * is retried row by row to find the bad pairs; any other failure fails the whole batch at once. Pairs still queued when the
+ * writer is closed, or when its thread dies, fail instead of waiting forever.
+ */
+public class MembershipWriteBehind implements AutoCloseable {
+
+    private static final Pending STOP = new Pending(0, 0, false);
+
+    private final DBManager dbManager;
+    private final BlockingQueue<Pending> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long offerTimeoutMillis;
+    private final Thread flusher;
+
+    private volatile boolean closed;
+
+    MembershipWriteBehind(DBManager dbManager, int queueCapacity, int batchSize, long flushIntervalMillis,
+                          long offerTimeoutMillis) {
+        this.dbManager = dbManager;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.flusher = new Thread(this::run, "db-membership-writer");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Queues one membership. Blocks while the queue is full, up to the pool acquire timeout.
+     */
+    public CompletableFuture<Void> enqueue(int userId, int teamId) {
+        return offer(new Pending(userId, teamId, false));
+    }
+
+    /**
+     * Blocks until every pair queued before this call has been written.
+     */
+    public void flush() throws DBException {
+        try {
+            offer(new Pending(0, 0, true)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DBException("Interrupted while flushing memberships", e);
+        } catch (ExecutionException e) {
+            throw new DBException("Cannot flush memberships", e.getCause());
+        }
+    }
+
+    public int getQueuedPairs() {
+        return queue.size();
+    }
+
+    @Override
+    public void close() throws DBException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            try {
+                queue.put(STOP);
+                flusher.join(TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos) + offerTimeoutMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            failQueued();
+        }
+    }
+
+    private CompletableFuture<Void> offer(Pending pending) {
+        if (closed) {
+            pending.future.completeExceptionally(new DBException("Membership writer is closed", null));
+            return pending.future;
+        }
+        try {
+            if (!queue.offer(pending, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                pending.future.completeExceptionally(new DBException("Membership queue is full ("
+                        + (queue.size() + queue.remainingCapacity()) + " pairs)", null));
+            } else if (closed && queue.remove(pending)) {
+                // closed while queueing, possibly after the last drain
+                pending.future.completeExceptionally(new DBException("Membership writer is closed", null));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.future.completeExceptionally(new DBException("Interrupted while queueing a membership", e));
+        }
+        return pending.future;
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        List<Pending> barriers = new ArrayList<>();
+        try {
+            while (true) {
+                Pending first = queue.take();
+                if (first == STOP) {
+                    return;
+                }
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                Pending next = first;
+                while (next != null) {
+                    if (next == STOP) {
+                        write(batch, barriers);
+                        return;
+                    }
+                    if (next.barrier) {
+                        // a flush() caller is waiting: write what we have now
+                        barriers.add(next);
+                        break;
+                    }
+                    batch.add(next);
+                    if (batch.size() >= batchSize) {
+                        break;
+                    }
+                    next = queue.poll();
+                    if (next == null) {
+                        long remaining = deadline - System.nanoTime();
+                        next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    }
+                }
+                write(batch, barriers);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closed = true;
+            DBException stopped = new DBException("Membership writer stopped", null);
+            for (Pending pending : batch) {
+                pending.future.completeExceptionally(stopped);
+            }
+            for (Pending barrier : barriers) {
+                barrier.future.completeExceptionally(stopped);
+            }
+            failQueued();
+        }
+    }
+
+    private void failQueued() {
+        DBException closedFailure = new DBException("Membership writer is closed", null);
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future.completeExceptionally(closedFailure);
+        }
+    }
+
+    private void write(List<Pending> batch, List<Pending> barriers) {
+        if (!batch.isEmpty()) {
+            int[] userIds = new int[batch.size()];
+            int[] teamIds = new int[batch.size()];
+            for (int i = 0; i < batch.size(); i++) {
+                userIds[i] = batch.get(i).userId;
+                teamIds[i] = batch.get(i).teamId;
+            }
+            try {
+                dbManager.insertMemberships(userIds, teamIds);
+                for (Pending pending : batch) {
+                    pending.future.complete(null);
+                }
+            } catch (DBException | RuntimeException batchFailure) {
+                if (!isRowFailure(batchFailure)) {
+                    // the database or the pool is unavailable: every row would wait and fail alike
+                    for (Pending pending : batch) {
+                        pending.future.completeExceptionally(batchFailure);
+                    }
+                    batch.clear();
+                    completeBarriers(barriers);
+                    return;
+                }
+                // one bad pair fails the whole transaction; retry row by row to isolate it
+                for (Pending pending : batch) {
+                    try {
+                        dbManager.insertMemberships(new int[]{pending.userId}, new int[]{pending.teamId});
+                        pending.future.complete(null);
+                    } catch (DBException | RuntimeException e) {
+                        pending.future.completeExceptionally(e);
+                    }
+                }
+            }
+            batch.clear();
+        }
+        completeBarriers(barriers);
+    }
+
+    private static void completeBarriers(List<Pending> barriers) {
+        for (Pending barrier : barriers) {
+            barrier.future.complete(null);
+        }
+        barriers.clear();
+    }
+
+    /**
+     * Whether the failure was caused by the rows themselves, a constraint violation or bad data
+     * (SQLSTATE class 23 or 22), rather than by the database or the pool being unavailable.
+     */
+    private static boolean isRowFailure(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (!(cause instanceof SQLException)) {
+                continue;
+            }
+            for (SQLException e = (SQLException) cause; e != null; e = e.getNextException()) {
+                String state = e.getSQLState();
+                if (e instanceof SQLIntegrityConstraintViolationException || e instanceof SQLDataException
+                        || state != null && (state.startsWith("23") || state.startsWith("22"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static final class Pending {
+
+        private final int userId;
+        private final int teamId;
+        private final boolean barrier;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private Pending(int userId, int teamId, boolean barrier) {
+            this.userId = userId;
+            this.teamId = teamId;
+            this.barrier = barrier;
+        }
+    }
+}
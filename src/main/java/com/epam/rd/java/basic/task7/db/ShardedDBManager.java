@@ -0,0 +1,467 @@
+package com.epam.rd.java.basic.task7.db;
+
+import com.epam.rd.java.basic.task7.db.config.AppConfig;
+import com.epam.rd.java.basic.task7.db.entity.Team;
+import com.epam.rd.java.basic.task7.db.entity.User;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Users and their memberships partitioned over several databases, each with the full schema and
+ * its own {@link DBManager}. A user lives on the shard picked by the CRC32 of its login, so the
+ * placement does not depend on the JVM or on insertion order; changing the number of shards moves
+ * users and needs a migration.
+ * <p>
+ * Teams are small and referenced by every shard's {@code users_teams}, so team writes go to every
+ * shard in parallel, with one team write at a time across shards, and a team gets the same id
+ * everywhere. If any shard fails an insert, the copies the other shards committed are deleted.
+ * Each shard assigns team ids from its own identity column, which such a failure can leave behind
+ * the others; inserts then fail with the ids each shard assigned, and nothing is written, until
+ * the identities of {@code teams} are reseeded to agree. Team reads are served by any shard.
+ * <p>
+ * User ids are made global as {@code localId * shards + shard}, so ids returned by this class are
+ * unique across shards and the shard of a user can be read from its id; a local id too large for
+ * that fails instead of wrapping around. Single-user operations
+ * run on one shard; user listings and team-wide queries run on every shard in parallel and are
+ * merged in id order.
+ */
+public class ShardedDBManager implements AutoCloseable {
+
+    @FunctionalInterface
+    private interface ShardCall<T> {
+
+        T call(int shard, DBManager dbManager) throws DBException;
+    }
+
+    @FunctionalInterface
+    private interface TeamInsert {
+
+        void insert(DBManager dbManager, List<Team> copies) throws DBException;
+    }
+
+    private static final Comparator<User> BY_ID = Comparator.comparingInt(User::getId);
+
+    private final DBManager[] shards;
+    private final ExecutorService executor;
+    private final Object teamWrites = new Object();
+    private final AtomicInteger nextTeamShard = new AtomicInteger();
+
+    public ShardedDBManager(List<DBManager> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shards = shards.toArray(new DBManager[0]);
+        this.executor = Executors.newFixedThreadPool(this.shards.length, r -> {
+            Thread thread = new Thread(r, "db-shard-fan-out");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * One {@link DBManager} per entry of {@code shard.urls}, each with the rest of the configuration.
+     */
+    public static ShardedDBManager create(AppConfig config) {
+        List<DBManager> shards = new ArrayList<>();
+        for (String url : config.getShardUrls()) {
+            shards.add(new DBManager(config.forShard(url)));
+        }
+        return new ShardedDBManager(shards);
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public int shardOf(String login) {
+        CRC32 crc = new CRC32();
+        crc.update(login.getBytes(StandardCharsets.UTF_8));
+        return (int) (crc.getValue() % shards.length);
+    }
+
+    public List<User> findAllUsers() throws DBException {
+        List<List<User>> perShard = fanOut(allShards(), (shard, db) -> toGlobal(db.findAllUsers(), shard));
+        return merge(perShard);
+    }
+
+    /**
+     * Returns up to {@code limit} users with global ids greater than {@code afterId}, ordered by id.
+     */
+    public List<User> findUsers(int afterId, int limit) throws DBException {
+        List<List<User>> perShard = fanOut(allShards(), (shard, db) ->
+                toGlobal(db.findUsers(Math.floorDiv(afterId - shard, shards.length), limit), shard));
+        List<User> users = merge(perShard);
+        return users.size() > limit ? new ArrayList<>(users.subList(0, limit)) : users;
+    }
+
+    /**
+     * Streams the users of every shard, one shard after the other. The stream holds a pooled
+     * connection per shard until it is closed.
+     */
+    public Stream<User> streamAllUsers() throws DBException {
+        Stream<User> users = Stream.empty();
+        try {
+            for (int i = 0; i < shards.length; i++) {
+                int shard = i;
+                users = Stream.concat(users, shards[i].streamAllUsers().map(user -> toGlobal(user, shard)));
+            }
+        } catch (DBException e) {
+            users.close();
+            throw e;
+        }
+        return users;
+    }
+
+    public List<Team> findAllTeams() throws DBException {
+        return teamShard().findAllTeams();
+    }
+
+    public List<Team> findTeams(int afterId, int limit) throws DBException {
+        return teamShard().findTeams(afterId, limit);
+    }
+
+    public Stream<Team> streamAllTeams() throws DBException {
+        return teamShard().streamAllTeams();
+    }
+
+    public boolean insertUser(User user) throws DBException {
+        int shard = shardOf(user.getLogin());
+        User local = User.createUser(user.getLogin());
+        boolean inserted = shards[shard].insertUser(local);
+        user.setId(globalId(local.getId(), shard));
+        return inserted;
+    }
+
+    public boolean insertUsers(Collection<User> users) throws DBException {
+        Map<Integer, List<User>> byShard = groupByShard(users);
+        fanOut(byShard.keySet(), (shard, db) -> {
+            List<User> locals = new ArrayList<>();
+            for (User user : byShard.get(shard)) {
+                locals.add(User.createUser(user.getLogin()));
+            }
+            db.insertUsers(locals);
+            for (int i = 0; i < locals.size(); i++) {
+                byShard.get(shard).get(i).setId(globalId(locals.get(i).getId(), shard));
+            }
+            return null;
+        });
+        return true;
+    }
+
+    public boolean deleteUsers(User... users) throws DBException {
+        List<User> list = new ArrayList<>();
+        for (User user : users) {
+            if (user == null) return false;
+            list.add(user);
+        }
+        Map<Integer, List<User>> byShard = groupByShard(list);
+        fanOut(byShard.keySet(), (shard, db) -> db.deleteUsers(toLocal(byShard.get(shard)).toArray(new User[0])));
+        return true;
+    }
+
+    public User getUser(String login) throws DBException {
+        int shard = shardOf(login);
+        return toGlobal(shards[shard].getUser(login), shard);
+    }
+
+    public Map<String, User> getUsers(Collection<String> logins) throws DBException {
+        Map<Integer, List<String>> byShard = new HashMap<>();
+        for (String login : logins) {
+            byShard.computeIfAbsent(shardOf(login), s -> new ArrayList<>()).add(login);
+        }
+        List<Map<String, User>> perShard = fanOut(byShard.keySet(), (shard, db) -> {
+            Map<String, User> found = new HashMap<>();
+            db.getUsers(byShard.get(shard)).forEach((login, user) -> found.put(login, toGlobal(user, shard)));
+            return found;
+        });
+        Map<String, User> users = new HashMap<>();
+        perShard.forEach(users::putAll);
+        return users;
+    }
+
+    public boolean insertTeam(Team team) throws DBException {
+        insertOnEveryShard(Collections.singletonList(team), (db, copies) -> db.insertTeam(copies.get(0)));
+        return true;
+    }
+
+    public boolean insertTeams(Collection<Team> teams) throws DBException {
+        insertOnEveryShard(new ArrayList<>(teams), DBManager::insertTeams);
+        return true;
+    }
+
+    public boolean deleteTeam(Team team) throws DBException {
+        if (team == null) return false;
+        synchronized (teamWrites) {
+            fanOut(allShards(), (shard, db) -> db.deleteTeam(team));
+        }
+        return true;
+    }
+
+    public boolean updateTeam(Team team) throws DBException {
+        synchronized (teamWrites) {
+            fanOut(allShards(), (shard, db) -> db.updateTeam(team));
+        }
+        return true;
+    }
+
+    public Team getTeam(String name) throws DBException {
+        return teamShard().getTeam(name);
+    }
+
+    public Map<String, Team> getTeams(Collection<String> names) throws DBException {
+        return teamShard().getTeams(names);
+    }
+
+    public boolean setTeamsForUser(User user, Team... teams) throws DBException {
+        if (user == null) throw new DBException("User is null", new NullPointerException());
+        return shards[shardOf(user.getLogin())].setTeamsForUser(toLocal(user), teams);
+    }
+
+    public boolean replaceTeamsForUser(User user, Team... teams) throws DBException {
+        if (user == null) throw new DBException("User is null", new NullPointerException());
+        return shards[shardOf(user.getLogin())].replaceTeamsForUser(toLocal(user), teams);
+    }
+
+    public boolean addTeamsForUser(User user, Team... teams) throws DBException {
+        if (user == null) throw new DBException("User is null", new NullPointerException());
+        return shards[shardOf(user.getLogin())].addTeamsForUser(toLocal(user), teams);
+    }
+
+    public CompletableFuture<Void> enqueueTeamsForUser(User user, Team... teams) throws DBException {
+        if (user == null) throw new DBException("User is null", new NullPointerException());
+        return shards[shardOf(user.getLogin())].enqueueTeamsForUser(toLocal(user), teams);
+    }
+
+    public void flushMemberships() throws DBException {
+        fanOut(allShards(), (shard, db) -> {
+            db.flushMemberships();
+            return null;
+        });
+    }
+
+    public List<Team> getUserTeams(User user) throws DBException {
+        return shards[shardOf(user.getLogin())].getUserTeams(toLocal(user));
+    }
+
+    public int countTeams(User user) throws DBException {
+        return shards[shardOf(user.getLogin())].countTeams(toLocal(user));
+    }
+
+    public List<User> getTeamUsers(Team team) throws DBException {
+        return merge(fanOut(allShards(), (shard, db) -> toGlobal(db.getTeamUsers(team), shard)));
+    }
+
+    public int countMembers(Team team) throws DBException {
+        int members = 0;
+        for (int count : fanOut(allShards(), (shard, db) -> db.countMembers(team))) {
+            members += count;
+        }
+        return members;
+    }
+
+    public Map<User, List<Team>> getTeamsForUsers(Collection<User> users) throws DBException {
+        Map<Integer, List<User>> byShard = groupByShard(users);
+        List<Map<User, List<Team>>> perShard = fanOut(byShard.keySet(),
+                (shard, db) -> db.getTeamsForUsers(toLocal(byShard.get(shard))));
+        // the shard results are keyed by the local copies, which are equal to the callers' users
+        Map<User, List<Team>> teamsByLogin = new HashMap<>();
+        perShard.forEach(teamsByLogin::putAll);
+        Map<User, List<Team>> result = new LinkedHashMap<>();
+        for (User user : users) {
+            result.put(user, teamsByLogin.get(user));
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        for (DBManager shard : shards) {
+            shard.close();
+        }
+    }
+
+    private int globalId(int localId, int shard) {
+        if (localId == 0) {
+            return 0;
+        }
+        try {
+            return Math.addExact(Math.multiplyExact(localId, shards.length), shard);
+        } catch (ArithmeticException e) {
+            throw new IllegalStateException("Id " + localId + " of shard " + shard + " has no global id", e);
+        }
+    }
+
+    private User toGlobal(User user, int shard) {
+        // shards may hand out shared immutable users, so the global id goes on a copy
+        User global = User.createUser(user.getLogin());
+        global.setId(globalId(user.getId(), shard));
+        return global;
+    }
+
+    private List<User> toGlobal(List<User> users, int shard) {
+        List<User> global = new ArrayList<>(users.size());
+        for (User user : users) {
+            global.add(toGlobal(user, shard));
+        }
+        return global;
+    }
+
+    private User toLocal(User user) {
+        User local = User.createUser(user.getLogin());
+        local.setId(user.getId() / shards.length);
+        return local;
+    }
+
+    private List<User> toLocal(List<User> users) {
+        List<User> locals = new ArrayList<>(users.size());
+        for (User user : users) {
+            locals.add(toLocal(user));
+        }
+        return locals;
+    }
+
+    private Map<Integer, List<User>> groupByShard(Collection<User> users) {
+        Map<Integer, List<User>> byShard = new HashMap<>();
+        for (User user : users) {
+            byShard.computeIfAbsent(shardOf(user.getLogin()), s -> new ArrayList<>()).add(user);
+        }
+        return byShard;
+    }
+
+    private static List<User> merge(List<List<User>> perShard) {
+        List<User> users = new ArrayList<>();
+        perShard.forEach(users::addAll);
+        users.sort(BY_ID);
+        return users;
+    }
+
+    /**
+     * Inserts a copy of the teams on every shard and gives each team the id its copies share. On
+     * failure, including copies that got different ids, every copy still in place is deleted.
+     */
+    private void insertOnEveryShard(List<Team> teams, TeamInsert insert) throws DBException {
+        List<List<Team>> copies = new ArrayList<>(shards.length);
+        for (int shard = 0; shard < shards.length; shard++) {
+            List<Team> shardCopies = new ArrayList<>(teams.size());
+            for (Team team : teams) {
+                shardCopies.add(Team.createTeam(team.getName()));
+            }
+            copies.add(shardCopies);
+        }
+        synchronized (teamWrites) {
+            try {
+                fanOut(allShards(), (shard, db) -> {
+                    insert.insert(db, copies.get(shard));
+                    return null;
+                });
+                for (int i = 0; i < teams.size(); i++) {
+                    teams.get(i).setId(sharedId(copies, i));
+                }
+            } catch (DBException | RuntimeException e) {
+                deleteCopies(copies, e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * The id every shard gave team {@code i}. Identity values are assigned by each shard on its
+     * own; once the shards disagree, every later team insert would too, so this fails and leaves
+     * reseeding the identity of {@code teams} to an operator rather than guessing a repair.
+     */
+    private int sharedId(List<List<Team>> copies, int i) throws DBException {
+        int id = copies.get(0).get(i).getId();
+        for (int shard = 1; shard < shards.length; shard++) {
+            int shardId = copies.get(shard).get(i).getId();
+            if (shardId != id) {
+                throw new DBException("Team " + copies.get(0).get(i).getName() + " got id " + id
+                        + " on shard 0 but " + shardId + " on shard " + shard
+                        + "; the team identities of the shards have diverged and must be reseeded", null);
+            }
+        }
+        return id;
+    }
+
+    private void deleteCopies(List<List<Team>> copies, Exception failure) {
+        for (int shard = 0; shard < shards.length; shard++) {
+            for (Team copy : copies.get(shard)) {
+                if (copy.getId() == 0) {
+                    continue;
+                }
+                try {
+                    shards[shard].deleteTeam(copy);
+                } catch (DBException e) {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+    }
+
+    private DBManager teamShard() {
+        return shards[Math.floorMod(nextTeamShard.getAndIncrement(), shards.length)];
+    }
+
+    private List<Integer> allShards() {
+        List<Integer> all = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            all.add(i);
+        }
+        return all;
+    }
+
+    /**
+     * Runs the call on the given shards in parallel and returns the results in the same order.
+     * Waits for every shard before failing with the first error.
+     */
+    private <T> List<T> fanOut(Collection<Integer> targets, ShardCall<T> call) throws DBException {
+        if (targets.size() == 1) {
+            int shard = targets.iterator().next();
+            List<T> result = new ArrayList<>(1);
+            result.add(call.call(shard, shards[shard]));
+            return result;
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>(targets.size());
+        for (int shard : targets) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return call.call(shard, shards[shard]);
+                } catch (DBException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DBException("Interrupted while waiting for shards", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DBException) {
+                throw (DBException) e.getCause();
+            }
+            throw new DBException("Shard call failed", e.getCause());
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<T> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+}
@@ -0,0 +1,16 @@
+package com.epam.rd.java.basic.task7.db;
+
+/**
+ * Carries a {@link DBException} out of APIs that cannot throw checked exceptions, such as streams.
+ */
+public class UncheckedDBException extends RuntimeException {
+
+	public UncheckedDBException(DBException cause) {
+		super(cause.getMessage(), cause);
+	}
+
+	@Override
+	public synchronized DBException getCause() {
+		return (DBException) super.getCause();
+	}
+}
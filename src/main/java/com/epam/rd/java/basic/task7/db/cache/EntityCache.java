@@ -0,0 +1,173 @@
+package com.epam.rd.java.basic.task7.db.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded LRU cache of (id, name) pairs with a time-to-live, indexed both by name and by id.
+ * Only immutable pairs are cached so callers always get fresh entity objects.
+ */
+public class EntityCache {
+
+    public static final int MISS = -1;
+
+    private final boolean enabled;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+
+    private final LinkedHashMap<String, Entry> byName;
+    private final Map<Integer, Entry> byId = new HashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public EntityCache(int maxSize, long ttlMillis) {
+        this(maxSize, ttlMillis, System::nanoTime);
+    }
+
+    EntityCache(int maxSize, long ttlMillis, LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.enabled = maxSize > 0;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlMillis <= 0 ? Long.MAX_VALUE : ttlMillis * 1_000_000;
+        this.byName = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    public static EntityCache disabled() {
+        return new EntityCache(0, 0);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getId(String name) {
+        if (!enabled) {
+            return MISS;
+        }
+        synchronized (this) {
+            Entry entry = byName.get(name);
+            if (entry != null && !expired(entry)) {
+                hits.increment();
+                return entry.id;
+            }
+            if (entry != null) {
+                unlink(entry);
+            }
+        }
+        misses.increment();
+        return MISS;
+    }
+
+    public String getName(int id) {
+        if (!enabled) {
+            return null;
+        }
+        synchronized (this) {
+            Entry entry = byId.get(id);
+            if (entry != null && !expired(entry)) {
+                byName.get(entry.name);
+                hits.increment();
+                return entry.name;
+            }
+            if (entry != null) {
+                unlink(entry);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(int id, String name) {
+        if (!enabled) {
+            return;
+        }
+        Entry entry = new Entry(id, name, nanoClock.getAsLong());
+        synchronized (this) {
+            invalidateInternal(id, name);
+            byName.put(name, entry);
+            byId.put(id, entry);
+            Iterator<Entry> it = byName.values().iterator();
+            while (byName.size() > maxSize && it.hasNext()) {
+                Entry eldest = it.next();
+                it.remove();
+                byId.remove(eldest.id);
+                evictions.increment();
+            }
+        }
+    }
+
+    public void invalidate(int id) {
+        if (enabled) {
+            synchronized (this) {
+                Entry entry = byId.get(id);
+                if (entry != null) {
+                    unlink(entry);
+                }
+            }
+        }
+    }
+
+    public void invalidate(String name) {
+        if (enabled) {
+            synchronized (this) {
+                Entry entry = byName.get(name);
+                if (entry != null) {
+                    unlink(entry);
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        if (enabled) {
+            synchronized (this) {
+                byName.clear();
+                byId.clear();
+            }
+        }
+    }
+
+    public synchronized CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), byName.size());
+    }
+
+    private void invalidateInternal(int id, String name) {
+        Entry old = byId.get(id);
+        if (old != null) {
+            unlink(old);
+        }
+        old = byName.get(name);
+        if (old != null) {
+            unlink(old);
+        }
+    }
+
+    private void unlink(Entry entry) {
+        byName.remove(entry.name, entry);
+        byId.remove(entry.id, entry);
+    }
+
+    private boolean expired(Entry entry) {
+        return nanoClock.getAsLong() - entry.createdAt > ttlNanos;
+    }
+
+    private static final class Entry {
+
+        private final int id;
+        private final String name;
+        private final long createdAt;
+
+        private Entry(int id, String name, long createdAt) {
+            this.id = id;
+            this.name = name;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.epam.rd.java.basic.task7.db.cache;
+
+import com.epam.rd.java.basic.task7.db.entity.Team;
+import com.epam.rd.java.basic.task7.db.entity.User;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * Flyweights for rows read from the database: one immutable {@link User} or {@link Team} per id,
+ * reused for as long as the row keeps its login or name, so repeated scans return the same
+ * instances instead of new copies. Entries live in arrays indexed by id (generated ids are dense),
+ * which makes a lookup one volatile read with no boxing; ids at or above {@code maxId} are not
+ * registered. Logins and names of new entries are interned so equal strings are stored once;
+ * the intern table starts over once it holds {@code maxNames} strings.
+ */
+public class EntityRegistry {
+
+    @FunctionalInterface
+    private interface Factory<T> {
+
+        T create(int id, String name);
+    }
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int maxId;
+    private final int maxNames;
+    private final Slots<User> users;
+    private final Slots<Team> teams;
+    private final ConcurrentHashMap<String, String> names = new ConcurrentHashMap<>();
+
+    public EntityRegistry(int maxId, int maxNames) {
+        this.maxId = maxId;
+        this.maxNames = maxNames;
+        this.users = new Slots<>(User::getLogin, User::of);
+        this.teams = new Slots<>(Team::getName, Team::of);
+    }
+
+    public User user(int id, String login) {
+        return users.get(id, login);
+    }
+
+    public Team team(int id, String name) {
+        return teams.get(id, name);
+    }
+
+    public void removeUser(int id) {
+        users.remove(id);
+    }
+
+    public void removeTeam(int id) {
+        teams.remove(id);
+    }
+
+    public void clear() {
+        users.clear();
+        teams.clear();
+        names.clear();
+    }
+
+    private String intern(String name) {
+        if (name == null) {
+            return null;
+        }
+        if (names.size() >= maxNames) {
+            names.clear();
+        }
+        String existing = names.putIfAbsent(name, name);
+        return existing == null ? name : existing;
+    }
+
+    private final class Slots<T> {
+
+        private final Function<T, String> nameOf;
+        private final Factory<T> factory;
+        private volatile AtomicReferenceArray<T> entries = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+
+        private Slots(Function<T, String> nameOf, Factory<T> factory) {
+            this.nameOf = nameOf;
+            this.factory = factory;
+        }
+
+        private T get(int id, String name) {
+            AtomicReferenceArray<T> entries = this.entries;
+            if (id >= 0 && id < entries.length()) {
+                T entity = entries.get(id);
+                if (entity != null && Objects.equals(nameOf.apply(entity), name)) {
+                    return entity;
+                }
+            }
+            T entity = factory.create(id, intern(name));
+            if (id >= 0 && id < maxId) {
+                grow(id).set(id, entity);
+            }
+            return entity;
+        }
+
+        private void remove(int id) {
+            AtomicReferenceArray<T> entries = this.entries;
+            if (id >= 0 && id < entries.length()) {
+                entries.set(id, null);
+            }
+        }
+
+        private synchronized void clear() {
+            entries = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+        }
+
+        private synchronized AtomicReferenceArray<T> grow(int id) {
+            AtomicReferenceArray<T> entries = this.entries;
+            if (id < entries.length()) {
+                return entries;
+            }
+            int capacity = entries.length();
+            while (capacity <= id) {
+                capacity = (int) Math.min((long) maxId, capacity * 2L);
+            }
+            AtomicReferenceArray<T> grown = new AtomicReferenceArray<>(capacity);
+            for (int i = 0; i < entries.length(); i++) {
+                grown.set(i, entries.get(i));
+            }
+            this.entries = grown;
+            return grown;
+        }
+    }
+}
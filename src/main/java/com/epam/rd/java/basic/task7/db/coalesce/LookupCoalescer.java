@@ -0,0 +1,156 @@
+package com.epam.rd.java.basic.task7.db.coalesce;
+
+import com.epam.rd.java.basic.task7.db.DBException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects single-key lookups arriving within a short window (or until a batch is full) and
+ * resolves them with one bulk load. Lookups of the same key within a window share one future.
+ * A lookup never joins a batch whose load has already started, so it sees every write that
+ * completed before it was made.
+ */
+public class LookupCoalescer<K, V> implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface BatchLoader<K, V> {
+
+        /**
+         * Loads the given keys; keys missing from the returned map resolve to {@code null}.
+         */
+        Map<K, V> load(List<K> keys) throws DBException;
+    }
+
+    private final BatchLoader<K, V> loader;
+    private final long windowNanos;
+    private final int maxBatch;
+    private final ScheduledExecutorService scheduler;
+
+    private final Object lock = new Object();
+    private Map<K, CompletableFuture<V>> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> windowTask;
+    private boolean closed;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    public LookupCoalescer(String name, BatchLoader<K, V> loader, long windowMicros, int maxBatch, int threads) {
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException("maxBatch must be positive: " + maxBatch);
+        }
+        this.loader = loader;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatch = maxBatch;
+        AtomicInteger counter = new AtomicInteger();
+        this.scheduler = Executors.newScheduledThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "db-coalesce-" + name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public CompletableFuture<V> get(K key) {
+        requests.increment();
+        Map<K, CompletableFuture<V>> full = null;
+        CompletableFuture<V> future;
+        synchronized (lock) {
+            if (closed) {
+                return CompletableFuture.failedFuture(new DBException("Lookup coalescer is closed",
+                        new RejectedExecutionException()));
+            }
+            future = pending.get(key);
+            if (future != null) {
+                deduplicated.increment();
+                return future;
+            }
+            future = new CompletableFuture<>();
+            pending.put(key, future);
+            if (pending.size() >= maxBatch) {
+                full = takePending();
+            } else if (pending.size() == 1) {
+                windowTask = scheduler.schedule(this::flushWindow, windowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (full != null) {
+            Map<K, CompletableFuture<V>> batch = full;
+            try {
+                scheduler.execute(() -> load(batch));
+            } catch (RejectedExecutionException e) {
+                fail(batch, new DBException("Lookup coalescer is closed", e));
+            }
+        }
+        return future;
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getDeduplicated() {
+        return deduplicated.sum();
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    /**
+     * Stops accepting lookups; a batch that is still collecting is loaded before the threads stop.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+        }
+        scheduler.shutdown();
+    }
+
+    private Map<K, CompletableFuture<V>> takePending() {
+        Map<K, CompletableFuture<V>> batch = pending;
+        pending = new LinkedHashMap<>();
+        if (windowTask != null) {
+            windowTask.cancel(false);
+            windowTask = null;
+        }
+        return batch;
+    }
+
+    private void flushWindow() {
+        Map<K, CompletableFuture<V>> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = takePending();
+        }
+        load(batch);
+    }
+
+    private void load(Map<K, CompletableFuture<V>> batch) {
+        batches.increment();
+        try {
+            Map<K, V> loaded = loader.load(new ArrayList<>(batch.keySet()));
+            batch.forEach((key, future) -> future.complete(loaded.get(key)));
+        } catch (Throwable t) {
+            fail(batch, t);
+        }
+    }
+
+    private void fail(Map<K, CompletableFuture<V>> batch, Throwable failure) {
+        for (CompletableFuture<V> future : batch.values()) {
+            future.completeExceptionally(failure);
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package com.epam.rd.java.basic.task7.db.config;
+
+import com.epam.rd.java.basic.task7.db.Dialect;
+import com.epam.rd.java.basic.task7.db.pool.PoolSettings;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * Immutable, typed snapshot of {@code app.properties}.
+ */
+public final class AppConfig {
+
+    public static final String CONNECTION_URL = "connection.url";
+    public static final String CONFIG_WATCH = "config.watch";
+    public static final String REPLICA_URLS = "replica.urls";
+    public static final String SHARD_URLS = "shard.urls";
+
+    private final Properties properties;
+    private final String url;
+    private final List<String> replicaUrls;
+    private final List<String> shardUrls;
+    private final long replicaStickyMillis;
+    private final Dialect dialect;
+    private final PoolSettings poolSettings;
+    private final boolean watch;
+    private final int batchSize;
+    private final int fetchSize;
+    private final boolean cacheEnabled;
+    private final int cacheMaxSize;
+    private final long cacheTtlMillis;
+    private final boolean coalesceEnabled;
+    private final long coalesceWindowMicros;
+    private final int coalesceMaxBatch;
+    private final int coalesceThreads;
+    private final boolean metricsEnabled;
+    private final boolean jmxEnabled;
+    private final long slowQueryThresholdMillis;
+    private final int slowQueryQueueCapacity;
+    private final int eventBufferSize;
+    private final int eventMaxBatch;
+    private final boolean sharedEntities;
+    private final boolean membershipIndex;
+    private final int sharedEntitiesMaxId;
+    private final int sharedEntitiesMaxNames;
+    private final int writeBehindQueueCapacity;
+    private final int writeBehindBatchSize;
+    private final long writeBehindFlushIntervalMillis;
+    private final int asyncMaxInFlight;
+
+    private AppConfig(Properties properties) {
+        this.properties = properties;
+        this.url = properties.getProperty(CONNECTION_URL);
+        this.replicaUrls = parseList(properties.getProperty(REPLICA_URLS));
+        this.shardUrls = parseList(properties.getProperty(SHARD_URLS));
+        this.replicaStickyMillis = getLong("replica.stickyMillis", 1_000);
+        this.dialect = Dialect.of(url);
+        this.watch = getBoolean(CONFIG_WATCH, false);
+        this.batchSize = getInt("batch.size", 500);
+        this.fetchSize = getInt("query.fetchSize", 1000);
+        this.cacheEnabled = getBoolean("cache.enabled", false);
+        this.cacheMaxSize = getInt("cache.maxSize", 10_000);
+        this.cacheTtlMillis = getLong("cache.ttlMillis", 60_000);
+        this.coalesceEnabled = getBoolean("coalesce.enabled", false);
+        this.coalesceWindowMicros = getLong("coalesce.windowMicros", 1_000);
+        this.coalesceMaxBatch = getInt("coalesce.maxBatch", 100);
+        this.coalesceThreads = getInt("coalesce.threads", 2);
+        this.metricsEnabled = getBoolean("metrics.enabled", true);
+        this.jmxEnabled = getBoolean("metrics.jmx", false);
+        this.slowQueryThresholdMillis = getLong("slowQuery.thresholdMillis", -1);
+        if (slowQueryThresholdMillis < -1) {
+            throw new IllegalArgumentException("slowQuery.thresholdMillis must be -1 (off) or at least 0: "
+                    + slowQueryThresholdMillis);
+        }
+        this.slowQueryQueueCapacity = getPositiveInt("slowQuery.queueCapacity", 1024);
+        this.eventBufferSize = getPositiveInt("events.bufferSize", 8192);
+        this.eventMaxBatch = getPositiveInt("events.maxBatch", 256);
+        this.sharedEntities = getBoolean("entities.shared", false);
+        this.membershipIndex = getBoolean("membershipIndex.enabled", false);
+        this.sharedEntitiesMaxId = getPositiveInt("entities.sharedMaxId", 1_000_000);
+        this.sharedEntitiesMaxNames = getPositiveInt("entities.sharedMaxNames", 100_000);
+        this.writeBehindQueueCapacity = getPositiveInt("writeBehind.queueCapacity", 10_000);
+        this.writeBehindBatchSize = getPositiveInt("writeBehind.batchSize", 1_000);
+        this.writeBehindFlushIntervalMillis = getPositiveLong("writeBehind.flushIntervalMillis", 100);
+
+        PoolSettings settings = new PoolSettings();
+        settings.setMinSize(getInt("pool.minSize", settings.getMinSize()));
+        settings.setMaxSize(getInt("pool.maxSize", settings.getMaxSize()));
+        settings.setAcquireTimeoutMillis(getLong("pool.acquireTimeoutMillis", settings.getAcquireTimeoutMillis()));
+        settings.setIdleTimeoutMillis(getLong("pool.idleTimeoutMillis", settings.getIdleTimeoutMillis()));
+        settings.setEvictionIntervalMillis(getLong("pool.evictionIntervalMillis",
+                settings.getEvictionIntervalMillis()));
+        settings.setValidateOnBorrow(getBoolean("pool.validateOnBorrow", settings.isValidateOnBorrow()));
+        settings.setValidationTimeoutSeconds(getInt("pool.validationTimeoutSeconds",
+                settings.getValidationTimeoutSeconds()));
+        settings.setStatementCacheSize(getInt("pool.statementCacheSize", settings.getStatementCacheSize()));
+        this.poolSettings = settings;
+        this.asyncMaxInFlight = getPositiveInt("async.maxInFlight", settings.getMaxSize() * 4);
+    }
+
+    public static AppConfig load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        }
+        return new AppConfig(properties);
+    }
+
+    public static AppConfig of(Properties properties) {
+        Properties copy = new Properties();
+        copy.putAll(properties);
+        return new AppConfig(copy);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Read replicas from the comma separated {@code replica.urls}; empty when reads go to the primary.
+     */
+    public List<String> getReplicaUrls() {
+        return replicaUrls;
+    }
+
+    /**
+     * How long a thread keeps reading from the primary after it wrote, so it sees its own writes
+     * despite replication lag.
+     */
+    public long getReplicaStickyMillis() {
+        return replicaStickyMillis;
+    }
+
+    /**
+     * Databases of a sharded deployment from the comma separated {@code shard.urls}, in shard order.
+     */
+    public List<String> getShardUrls() {
+        return shardUrls;
+    }
+
+    /**
+     * This configuration with {@code connection.url} pointing at one shard, without the shard and
+     * replica lists.
+     */
+    public AppConfig forShard(String shardUrl) {
+        Properties copy = new Properties();
+        copy.putAll(properties);
+        copy.remove(SHARD_URLS);
+        copy.remove(REPLICA_URLS);
+        copy.setProperty(CONNECTION_URL, shardUrl);
+        return new AppConfig(copy);
+    }
+
+    public Dialect getDialect() {
+        return dialect;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public boolean isCacheEnabled() {
+        return cacheEnabled;
+    }
+
+    public int getCacheMaxSize() {
+        return cacheMaxSize;
+    }
+
+    public long getCacheTtlMillis() {
+        return cacheTtlMillis;
+    }
+
+    public boolean isCoalesceEnabled() {
+        return coalesceEnabled;
+    }
+
+    public long getCoalesceWindowMicros() {
+        return coalesceWindowMicros;
+    }
+
+    public int getCoalesceMaxBatch() {
+        return coalesceMaxBatch;
+    }
+
+    public int getCoalesceThreads() {
+        return coalesceThreads;
+    }
+
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    /**
+     * Whether each DBManager registers an MBean with its metrics.
+     */
+    public boolean isJmxEnabled() {
+        return jmxEnabled;
+    }
+
+    /**
+     * Statements slower than this are logged with their parameters; -1 turns the log off.
+     */
+    public long getSlowQueryThresholdMillis() {
+        return slowQueryThresholdMillis;
+    }
+
+    public boolean isSlowQueryLogEnabled() {
+        return slowQueryThresholdMillis >= 0;
+    }
+
+    public int getSlowQueryQueueCapacity() {
+        return slowQueryQueueCapacity;
+    }
+
+    /**
+     * Change events kept for subscribers that fall behind.
+     */
+    public int getEventBufferSize() {
+        return eventBufferSize;
+    }
+
+    public int getEventMaxBatch() {
+        return eventMaxBatch;
+    }
+
+    /**
+     * Whether membership reads are answered from the in-memory index.
+     */
+    public boolean isMembershipIndexEnabled() {
+        return membershipIndex;
+    }
+
+    /**
+     * Whether reads return shared immutable entities instead of a new copy per row.
+     */
+    public boolean isSharedEntitiesEnabled() {
+        return sharedEntities;
+    }
+
+    /**
+     * Rows with ids at or above this are not shared.
+     */
+    public int getSharedEntitiesMaxId() {
+        return sharedEntitiesMaxId;
+    }
+
+    /**
+     * Distinct logins and names interned for shared entities before the intern table starts over.
+     */
+    public int getSharedEntitiesMaxNames() {
+        return sharedEntitiesMaxNames;
+    }
+
+    public int getWriteBehindQueueCapacity() {
+        return writeBehindQueueCapacity;
+    }
+
+    public int getWriteBehindBatchSize() {
+        return writeBehindBatchSize;
+    }
+
+    /**
+     * How long queued memberships wait for more to fill a batch.
+     */
+    public long getWriteBehindFlushIntervalMillis() {
+        return writeBehindFlushIntervalMillis;
+    }
+
+    /**
+     * Calls an AsyncDBManager accepts before rejecting more; four per pooled connection by default.
+     */
+    public int getAsyncMaxInFlight() {
+        return asyncMaxInFlight;
+    }
+
+    /**
+     * A copy, so callers cannot change the settings of this snapshot.
+     */
+    public PoolSettings getPoolSettings() {
+        return new PoolSettings(poolSettings);
+    }
+
+    public boolean isWatchEnabled() {
+        return watch;
+    }
+
+    public boolean sameConnectionSettings(AppConfig other) {
+        return Objects.equals(url, other.url) && replicaUrls.equals(other.replicaUrls)
+                && samePoolSettings(poolSettings, other.poolSettings);
+    }
+
+    public boolean sameCacheSettings(AppConfig other) {
+        return cacheEnabled == other.cacheEnabled && cacheMaxSize == other.cacheMaxSize
+                && cacheTtlMillis == other.cacheTtlMillis;
+    }
+
+    public String getString(String key, String defaultValue) {
+        return properties.getProperty(key, defaultValue);
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    private int getPositiveInt(String key, int defaultValue) {
+        int value = getInt(key, defaultValue);
+        if (value < 1) {
+            throw new IllegalArgumentException(key + " must be positive: " + value);
+        }
+        return value;
+    }
+
+    private long getPositiveLong(String key, long defaultValue) {
+        long value = getLong(key, defaultValue);
+        if (value < 1) {
+            throw new IllegalArgumentException(key + " must be positive: " + value);
+        }
+        return value;
+    }
+
+    private static List<String> parseList(String value) {
+        if (value == null) {
+            return Collections.emptyList();
+        }
+        List<String> items = new ArrayList<>();
+        for (String item : value.split(",")) {
+            if (!item.trim().isEmpty()) {
+                items.add(item.trim());
+            }
+        }
+        return Collections.unmodifiableList(items);
+    }
+
+    private static boolean samePoolSettings(PoolSettings a, PoolSettings b) {
+        return a.getMinSize() == b.getMinSize()
+                && a.getMaxSize() == b.getMaxSize()
+                && a.getAcquireTimeoutMillis() == b.getAcquireTimeoutMillis()
+                && a.getIdleTimeoutMillis() == b.getIdleTimeoutMillis()
+                && a.getEvictionIntervalMillis() == b.getEvictionIntervalMillis()
+                && a.isValidateOnBorrow() == b.isValidateOnBorrow()
+                && a.getValidationTimeoutSeconds() == b.getValidationTimeoutSeconds()
+                && a.getStatementCacheSize() == b.getStatementCacheSize();
+    }
+}
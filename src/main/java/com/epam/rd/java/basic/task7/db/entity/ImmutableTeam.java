@@ -0,0 +1,45 @@
+package com.epam.rd.java.basic.task7.db.entity;
+
+/**
+ * A team whose id and name are final fields, so one instance can be handed to any number of
+ * callers and threads. Equal to a mutable {@link Team} with the same name.
+ */
+public final class ImmutableTeam extends Team {
+
+    private final int id;
+    private final String name;
+
+    ImmutableTeam(int id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    @Override
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public void setId(int id) {
+        throw readOnly();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void setName(String name) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean isImmutable() {
+        return true;
+    }
+
+    private UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Team " + name + " is shared and cannot be modified");
+    }
+}
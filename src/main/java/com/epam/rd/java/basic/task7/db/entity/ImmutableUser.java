@@ -0,0 +1,45 @@
+package com.epam.rd.java.basic.task7.db.entity;
+
+/**
+ * A user whose id and login are final fields, so one instance can be handed to any number of
+ * callers and threads. Equal to a mutable {@link User} with the same login.
+ */
+public final class ImmutableUser extends User {
+
+    private final int id;
+    private final String login;
+
+    ImmutableUser(int id, String login) {
+        this.id = id;
+        this.login = login;
+    }
+
+    @Override
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public void setId(int id) {
+        throw readOnly();
+    }
+
+    @Override
+    public String getLogin() {
+        return login;
+    }
+
+    @Override
+    public void setLogin(String login) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean isImmutable() {
+        return true;
+    }
+
+    private UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("User " + login + " is shared and cannot be modified");
+    }
+}
@@ -7,8 +7,11 @@ public class Team {
     private String name;
     private int id;
 
-    private Team(String name) {
-        this.id = 0;
+    Team() {
+    }
+
+    private Team(int id, String name) {
+        this.id = id;
         this.name = name;
     }
 
@@ -28,26 +31,40 @@ public class Team {
         this.name = name;
     }
 
+    /**
+     * Whether this is a shared {@link ImmutableTeam} whose setters throw.
+     */
+    public boolean isImmutable() {
+        return false;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
+        if (!(o instanceof Team)) return false;
         Team team = (Team) o;
-        return Objects.equals(name, team.name);
+        return Objects.equals(getName(), team.getName());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(name);
+        // String caches its own hash, so this neither allocates nor rehashes
+        return Objects.hashCode(getName());
     }
 
     public static Team createTeam(String name) {
-        return new Team(name);
+        return new Team(0, name);
+    }
+
+    /**
+     * A read-only team that can be shared between callers and threads.
+     */
+    public static Team of(int id, String name) {
+        return new ImmutableTeam(id, name);
     }
 
     @Override
     public String toString() {
-        return name;
+        return getName();
     }
-
 }
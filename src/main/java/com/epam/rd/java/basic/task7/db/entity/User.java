@@ -7,6 +7,9 @@ public class User {
     private int id;
     private String login;
 
+    User() {
+    }
+
     private User(int id, String login) {
         this.id = id;
         this.login = login;
@@ -28,25 +31,40 @@ public class User {
         this.login = login;
     }
 
+    /**
+     * Whether this is a shared {@link ImmutableUser} whose setters throw.
+     */
+    public boolean isImmutable() {
+        return false;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
+        if (!(o instanceof User)) return false;
         User user = (User) o;
-        return Objects.equals(login, user.login);
+        return Objects.equals(getLogin(), user.getLogin());
     }
 
     public static User createUser(String login) {
         return new User(0, login);
     }
 
+    /**
+     * A read-only user that can be shared between callers and threads.
+     */
+    public static User of(int id, String login) {
+        return new ImmutableUser(id, login);
+    }
+
     @Override
     public int hashCode() {
-        return Objects.hash(login);
+        // String caches its own hash, so this neither allocates nor rehashes
+        return Objects.hashCode(getLogin());
     }
 
     @Override
     public String toString() {
-        return login;
+        return getLogin();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,62 @@
+package com.epam.rd.java.basic.task7.db.events;
+
+/**
+ * One committed change. User events carry the user id and login, team events the team id and
+ * name, membership events both ids and no name. Deleting a user or team also removes its
+ * memberships without separate events, and {@code addTeamsForUser} reports only the memberships
+ * it inserted, not requested ones that already existed.
+ */
+public final class ChangeEvent {
+
+    public enum Type {
+        USER_INSERTED,
+        USER_DELETED,
+        TEAM_INSERTED,
+        TEAM_UPDATED,
+        TEAM_DELETED,
+        MEMBERSHIP_ADDED,
+        MEMBERSHIP_REMOVED
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final int userId;
+    private final int teamId;
+    private final String name;
+
+    ChangeEvent(long sequence, Type type, int userId, int teamId, String name) {
+        this.sequence = sequence;
+        this.type = type;
+        this.userId = userId;
+        this.teamId = teamId;
+        this.name = name;
+    }
+
+    /**
+     * Position in the feed, increasing by one per published event.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public int getTeamId() {
+        return teamId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + type + ": user=" + userId + ", team=" + teamId + ", name=" + name;
+    }
+}
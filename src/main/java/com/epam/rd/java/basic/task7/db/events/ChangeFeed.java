@@ -0,0 +1,177 @@
+package com.epam.rd.java.basic.task7.db.events;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Ring buffer of committed changes with one reader thread per subscription.
+ * <p>
+ * Writers claim a sequence number with a single atomic increment and store the event in its slot
+ * with a compare-and-set, so publishing never takes a lock and never waits for readers. Each
+ * subscription follows the sequence with its own cursor and hands its listener every event that
+ * is available, up to {@code maxBatch} at a time. A reader that falls a whole buffer behind has
+ * its oldest events overwritten; it skips ahead and its listener is told how many it missed.
+ * Publishing with no subscriptions is a no-op.
+ */
+public class ChangeFeed implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(ChangeFeed.class.getName());
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final AtomicReferenceArray<ChangeEvent> slots;
+    private final int mask;
+    private final int maxBatch;
+    private final AtomicLong next = new AtomicLong();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param bufferSize number of events kept for slow readers, rounded up to a power of two
+     */
+    public ChangeFeed(int bufferSize, int maxBatch) {
+        if (bufferSize < 1 || maxBatch < 1) {
+            throw new IllegalArgumentException("Invalid change feed size: buffer=" + bufferSize
+                    + ", batch=" + maxBatch);
+        }
+        int capacity = Integer.highestOneBit(bufferSize);
+        capacity = capacity == bufferSize ? capacity : capacity << 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.maxBatch = maxBatch;
+    }
+
+    /**
+     * Starts delivering events published from now on to the listener. Closing the returned
+     * subscription delivers what is already published and stops its thread.
+     */
+    public Subscription subscribe(ChangeListener listener) {
+        Subscription subscription = new Subscription(listener, next.get());
+        subscriptions.add(subscription);
+        subscription.thread.start();
+        return subscription;
+    }
+
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    public void publish(ChangeEvent.Type type, int userId, int teamId, String name) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        long sequence = next.getAndIncrement();
+        ChangeEvent event = new ChangeEvent(sequence, type, userId, teamId, name);
+        int index = (int) sequence & mask;
+        ChangeEvent current;
+        do {
+            current = slots.get(index);
+            if (current != null && current.getSequence() > sequence) {
+                // a writer a whole buffer ahead got here first; readers treat this one as missed
+                break;
+            }
+        } while (!slots.compareAndSet(index, current, event));
+        for (Subscription subscription : subscriptions) {
+            if (subscription.idle) {
+                LockSupport.unpark(subscription.thread);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+    }
+
+    public final class Subscription implements AutoCloseable {
+
+        private final ChangeListener listener;
+        private final Thread thread;
+        private long cursor;
+        private volatile boolean idle;
+        private volatile boolean closed;
+
+        private Subscription(ChangeListener listener, long cursor) {
+            this.listener = listener;
+            this.cursor = cursor;
+            this.thread = new Thread(this::run, "db-change-feed");
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            subscriptions.remove(this);
+        }
+
+        private void run() {
+            List<ChangeEvent> batch = new ArrayList<>(maxBatch);
+            while (true) {
+                long missed = 0;
+                while (batch.size() < maxBatch) {
+                    ChangeEvent event = slots.get((int) cursor & mask);
+                    if (event == null || event.getSequence() < cursor) {
+                        break;
+                    }
+                    if (event.getSequence() > cursor) {
+                        // lapped: hand over what was read before the gap, then report the gap
+                        if (batch.isEmpty()) {
+                            long oldest = Math.max(cursor + 1, next.get() - slots.length());
+                            missed = oldest - cursor;
+                            cursor = oldest;
+                        }
+                        break;
+                    }
+                    batch.add(event);
+                    cursor++;
+                }
+                if (missed > 0) {
+                    long skipped = missed;
+                    deliver(() -> listener.onMissed(skipped));
+                } else if (!batch.isEmpty()) {
+                    List<ChangeEvent> delivered = Collections.unmodifiableList(new ArrayList<>(batch));
+                    batch.clear();
+                    deliver(() -> listener.onEvents(delivered));
+                } else if (closed) {
+                    return;
+                } else {
+                    idle = true;
+                    if (!available()) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    }
+                    idle = false;
+                }
+            }
+        }
+
+        private boolean available() {
+            ChangeEvent event = slots.get((int) cursor & mask);
+            return closed || event != null && event.getSequence() >= cursor;
+        }
+
+        private void deliver(Runnable delivery) {
+            try {
+                delivery.run();
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Change listener failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.epam.rd.java.basic.task7.db.events;
+
+import java.util.List;
+
+/**
+ * Receives committed changes on the subscription's own thread, in publication order.
+ */
+@FunctionalInterface
+public interface ChangeListener {
+
+    void onEvents(List<ChangeEvent> events);
+
+    /**
+     * Called when the listener fell more than a buffer behind and {@code missed} events were
+     * overwritten before it could read them. Incremental state is then stale and should be
+     * rebuilt from the database.
+     */
+    default void onMissed(long missed) {
+    }
+}
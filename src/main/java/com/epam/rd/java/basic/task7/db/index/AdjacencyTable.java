@@ -0,0 +1,251 @@
+package com.epam.rd.java.basic.task7.db.index;
+
+import java.util.Arrays;
+
+/**
+ * One side of the membership graph: for every node id, a label and the ids of its neighbours.
+ * Ids are mapped to dense slots by an open-addressing int table (id 0 marks a free entry, which
+ * is safe because generated ids start at 1); each slot owns an {@code int[]} of neighbours in
+ * insertion order, grown by half on demand and trimmed after a bulk load. Nothing is boxed.
+ * Not thread-safe.
+ */
+final class AdjacencyTable {
+
+    private static final int[] NO_NEIGHBOURS = new int[0];
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] keys = new int[INITIAL_CAPACITY * 2];
+    private int[] slotOf = new int[INITIAL_CAPACITY * 2];
+    private int mask = keys.length - 1;
+    private int nodes;
+
+    private String[] labels = new String[INITIAL_CAPACITY];
+    private int[][] neighbours = new int[INITIAL_CAPACITY][];
+    private int[] degrees = new int[INITIAL_CAPACITY];
+    private int slots;
+    private int[] freeSlots = new int[INITIAL_CAPACITY];
+    private int freeCount;
+    private long edges;
+
+    /**
+     * Shrinks every neighbour array to its degree, after a bulk load.
+     */
+    void trimToSize() {
+        for (int slot = 0; slot < slots; slot++) {
+            int[] list = neighbours[slot];
+            if (list != null && list.length > degrees[slot]) {
+                neighbours[slot] = degrees[slot] == 0 ? NO_NEIGHBOURS : Arrays.copyOf(list, degrees[slot]);
+            }
+        }
+    }
+
+    int size() {
+        return nodes;
+    }
+
+    long edgeCount() {
+        return edges;
+    }
+
+    String label(int id) {
+        int slot = slot(id);
+        return slot < 0 ? null : labels[slot];
+    }
+
+    /**
+     * Creates the node if needed and sets its label unless {@code label} is null.
+     */
+    void declare(int id, String label) {
+        int slot = getOrCreate(id);
+        if (label != null) {
+            labels[slot] = label;
+        }
+    }
+
+    boolean addEdge(int id, int other) {
+        int slot = getOrCreate(id);
+        int[] list = neighbours[slot];
+        int degree = degrees[slot];
+        for (int i = 0; i < degree; i++) {
+            if (list[i] == other) {
+                return false;
+            }
+        }
+        if (degree == list.length) {
+            list = Arrays.copyOf(list, Math.max(2, degree + (degree >> 1) + 1));
+            neighbours[slot] = list;
+        }
+        list[degree] = other;
+        degrees[slot] = degree + 1;
+        edges++;
+        return true;
+    }
+
+    boolean removeEdge(int id, int other) {
+        int slot = slot(id);
+        if (slot < 0) {
+            return false;
+        }
+        int[] list = neighbours[slot];
+        int degree = degrees[slot];
+        for (int i = 0; i < degree; i++) {
+            if (list[i] == other) {
+                System.arraycopy(list, i + 1, list, i, degree - i - 1);
+                degrees[slot] = degree - 1;
+                edges--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int degree(int id) {
+        int slot = slot(id);
+        return slot < 0 ? 0 : degrees[slot];
+    }
+
+    int[] neighbours(int id) {
+        int slot = slot(id);
+        return slot < 0 ? NO_NEIGHBOURS : Arrays.copyOf(neighbours[slot], degrees[slot]);
+    }
+
+    /**
+     * Removes the node and returns the neighbours it had.
+     */
+    int[] removeNode(int id) {
+        int index = indexOf(id);
+        if (index < 0) {
+            return NO_NEIGHBOURS;
+        }
+        int slot = slotOf[index];
+        int[] removed = Arrays.copyOf(neighbours[slot], degrees[slot]);
+        edges -= degrees[slot];
+        neighbours[slot] = null;
+        labels[slot] = null;
+        degrees[slot] = 0;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        deleteAt(index);
+        nodes--;
+        return removed;
+    }
+
+    /**
+     * Shallow size of the arrays this table owns, assuming 16-byte array headers and 4-byte
+     * (compressed) references. Label strings are not included: they are shared with the entities.
+     */
+    long memoryBytes() {
+        long bytes = intArray(keys.length) + intArray(slotOf.length)
+                + refArray(labels.length) + refArray(neighbours.length) + intArray(degrees.length)
+                + intArray(freeSlots.length);
+        for (int slot = 0; slot < slots; slot++) {
+            if (neighbours[slot] != null) {
+                bytes += intArray(neighbours[slot].length);
+            }
+        }
+        return bytes;
+    }
+
+    private int getOrCreate(int id) {
+        int index = indexOf(id);
+        if (index >= 0) {
+            return slotOf[index];
+        }
+        if ((nodes + 1) * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        int slot = freeCount > 0 ? freeSlots[--freeCount] : newSlot();
+        neighbours[slot] = NO_NEIGHBOURS;
+        degrees[slot] = 0;
+        int i = hash(id);
+        while (keys[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = id;
+        slotOf[i] = slot;
+        nodes++;
+        return slot;
+    }
+
+    private int newSlot() {
+        if (slots == labels.length) {
+            int capacity = slots * 2;
+            labels = Arrays.copyOf(labels, capacity);
+            neighbours = Arrays.copyOf(neighbours, capacity);
+            degrees = Arrays.copyOf(degrees, capacity);
+        }
+        return slots++;
+    }
+
+    private int slot(int id) {
+        int index = indexOf(id);
+        return index < 0 ? -1 : slotOf[index];
+    }
+
+    private int indexOf(int id) {
+        if (id == 0) {
+            return -1;
+        }
+        for (int i = hash(id); keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Backward-shift deletion, so linear probing needs no tombstones.
+     */
+    private void deleteAt(int index) {
+        int hole = index;
+        int i = index;
+        while (true) {
+            i = (i + 1) & mask;
+            if (keys[i] == 0) {
+                break;
+            }
+            int home = hash(keys[i]);
+            boolean reachable = i > hole ? home > hole && home <= i : home > hole || home <= i;
+            if (!reachable) {
+                keys[hole] = keys[i];
+                slotOf[hole] = slotOf[i];
+                hole = i;
+            }
+        }
+        keys[hole] = 0;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldSlots = slotOf;
+        keys = new int[capacity];
+        slotOf = new int[capacity];
+        mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != 0) {
+                int i = hash(oldKeys[j]);
+                while (keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                slotOf[i] = oldSlots[j];
+            }
+        }
+    }
+
+    private int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static long intArray(int length) {
+        return 16 + 4L * length;
+    }
+
+    private static long refArray(int length) {
+        return 16 + 4L * length;
+    }
+}
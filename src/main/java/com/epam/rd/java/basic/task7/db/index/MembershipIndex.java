@@ -0,0 +1,329 @@
+package com.epam.rd.java.basic.task7.db.index;
+
+import com.epam.rd.java.basic.task7.db.DBException;
+import com.epam.rd.java.basic.task7.db.entity.Team;
+import com.epam.rd.java.basic.task7.db.entity.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory copy of {@code users_teams} as two {@link AdjacencyTable}s, user to teams and team to
+ * users, with logins and team names as labels.
+ * <p>
+ * The index is loaded on first use. The load queries into fresh tables without holding the lock,
+ * so reads keep going to the database meanwhile, and the tables are swapped in under the write
+ * lock. Updates are applied after the database commit under the write lock and are idempotent,
+ * but not commutative: callers must apply them in commit order, or an add committed before a
+ * delete may land after it and leave a stale membership. Updates arriving during a load are
+ * also replayed onto the new tables before the swap, so an update racing with a load is either
+ * seen by the load's query or applied after it. Updates arriving while the index is not loaded
+ * or loading are dropped; the next load reads them from the database. Reads return {@code null} when the index is not loaded, and callers then query
+ * the database instead.
+ */
+public class MembershipIndex {
+
+    @FunctionalInterface
+    public interface Loader {
+
+        /**
+         * Adds every membership through {@link Sink#addMembership}.
+         */
+        void load(Sink sink) throws DBException;
+    }
+
+    @FunctionalInterface
+    public interface Sink {
+
+        void addMembership(int userId, String login, int teamId, String teamName);
+    }
+
+    /**
+     * A change to both tables; {@code false} if the tables cannot absorb it and must be dropped.
+     */
+    @FunctionalInterface
+    private interface Update {
+
+        boolean apply(AdjacencyTable teamsByUser, AdjacencyTable usersByTeam);
+    }
+
+    private final Loader loader;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock loadLock = new ReentrantLock();
+    private AdjacencyTable teamsByUser = new AdjacencyTable();
+    private AdjacencyTable usersByTeam = new AdjacencyTable();
+    private volatile boolean loaded;
+    /** Updates seen while a load runs, replayed onto its tables; {@code null} otherwise. */
+    private List<Update> pending;
+
+    public MembershipIndex(Loader loader) {
+        this.loader = loader;
+    }
+
+    public void ensureLoaded() throws DBException {
+        if (loaded) {
+            return;
+        }
+        loadLock.lock();
+        try {
+            if (loaded) {
+                return;
+            }
+            lock.writeLock().lock();
+            try {
+                pending = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            AdjacencyTable loadedTeamsByUser = new AdjacencyTable();
+            AdjacencyTable loadedUsersByTeam = new AdjacencyTable();
+            try {
+                loader.load((userId, login, teamId, teamName) ->
+                        link(loadedTeamsByUser, loadedUsersByTeam, userId, login, teamId, teamName));
+                lock.writeLock().lock();
+                try {
+                    for (Update update : pending) {
+                        if (!update.apply(loadedTeamsByUser, loadedUsersByTeam)) {
+                            return;
+                        }
+                    }
+                    loadedTeamsByUser.trimToSize();
+                    loadedUsersByTeam.trimToSize();
+                    teamsByUser = loadedTeamsByUser;
+                    usersByTeam = loadedUsersByTeam;
+                    loaded = true;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    pending = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    /**
+     * Drops the index, and the result of a load in progress; the next read reloads it.
+     */
+    public void invalidate() {
+        update((byUser, byTeam) -> false);
+    }
+
+    public void addMembership(int userId, String login, int teamId, String teamName) {
+        update((byUser, byTeam) -> {
+            link(byUser, byTeam, userId, login, teamId, teamName);
+            return true;
+        });
+    }
+
+    /**
+     * Adds memberships known only by id. If a user or team has no label yet the index cannot
+     * answer for it, so it is invalidated instead.
+     */
+    public void addMemberships(int[] userIds, int[] teamIds) {
+        int[] users = userIds.clone();
+        int[] teams = teamIds.clone();
+        update((byUser, byTeam) -> {
+            for (int i = 0; i < users.length; i++) {
+                if (byUser.label(users[i]) == null || byTeam.label(teams[i]) == null) {
+                    return false;
+                }
+                byUser.addEdge(users[i], teams[i]);
+                byTeam.addEdge(teams[i], users[i]);
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Records labels ahead of {@link #addMemberships}, for writes that only carry ids.
+     */
+    public void declare(User user, Team... teams) {
+        int userId = user.getId();
+        String login = user.getLogin();
+        int[] teamIds = new int[teams.length];
+        String[] names = new String[teams.length];
+        for (int i = 0; i < teams.length; i++) {
+            teamIds[i] = teams[i].getId();
+            names[i] = teams[i].getName();
+        }
+        update((byUser, byTeam) -> {
+            byUser.declare(userId, login);
+            for (int i = 0; i < teamIds.length; i++) {
+                byTeam.declare(teamIds[i], names[i]);
+            }
+            return true;
+        });
+    }
+
+    public void removeMembership(int userId, int teamId) {
+        update((byUser, byTeam) -> {
+            byUser.removeEdge(userId, teamId);
+            byTeam.removeEdge(teamId, userId);
+            return true;
+        });
+    }
+
+    public void removeUser(int userId) {
+        update((byUser, byTeam) -> {
+            for (int teamId : byUser.removeNode(userId)) {
+                byTeam.removeEdge(teamId, userId);
+            }
+            return true;
+        });
+    }
+
+    public void removeTeam(int teamId) {
+        update((byUser, byTeam) -> {
+            for (int userId : byTeam.removeNode(teamId)) {
+                byUser.removeEdge(userId, teamId);
+            }
+            return true;
+        });
+    }
+
+    public void renameTeam(int teamId, String name) {
+        update((byUser, byTeam) -> {
+            if (byTeam.label(teamId) != null) {
+                byTeam.declare(teamId, name);
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Teams of the user in insertion order, or {@code null} if the index is not loaded.
+     */
+    public List<Team> teamsOf(int userId) {
+        lock.readLock().lock();
+        try {
+            if (!loaded) {
+                return null;
+            }
+            int[] teamIds = teamsByUser.neighbours(userId);
+            List<Team> teams = new ArrayList<>(teamIds.length);
+            for (int teamId : teamIds) {
+                Team team = Team.createTeam(usersByTeam.label(teamId));
+                team.setId(teamId);
+                teams.add(team);
+            }
+            return teams;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Members of the team in insertion order, or {@code null} if the index is not loaded.
+     */
+    public List<User> usersOf(int teamId) {
+        lock.readLock().lock();
+        try {
+            if (!loaded) {
+                return null;
+            }
+            int[] userIds = usersByTeam.neighbours(teamId);
+            List<User> users = new ArrayList<>(userIds.length);
+            for (int userId : userIds) {
+                User user = User.createUser(teamsByUser.label(userId));
+                user.setId(userId);
+                users.add(user);
+            }
+            return users;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of teams of the user, or -1 if the index is not loaded.
+     */
+    public int countTeams(int userId) {
+        lock.readLock().lock();
+        try {
+            return loaded ? teamsByUser.degree(userId) : -1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of members of the team, or -1 if the index is not loaded.
+     */
+    public int countMembers(int teamId) {
+        lock.readLock().lock();
+        try {
+            return loaded ? usersByTeam.degree(teamId) : -1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public long getMembershipCount() {
+        lock.readLock().lock();
+        try {
+            return teamsByUser.edgeCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Estimated heap held by both adjacency tables, excluding the label strings.
+     */
+    public long getMemoryBytes() {
+        lock.readLock().lock();
+        try {
+            return teamsByUser.memoryBytes() + usersByTeam.memoryBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public double getBytesPerMembership() {
+        long memberships = getMembershipCount();
+        return memberships == 0 ? 0.0 : (double) getMemoryBytes() / memberships;
+    }
+
+    /**
+     * Applies the update to the loaded tables and queues it for a load in progress. An update
+     * the loaded tables cannot absorb drops the index.
+     */
+    private void update(Update update) {
+        lock.writeLock().lock();
+        try {
+            if (loaded && !update.apply(teamsByUser, usersByTeam)) {
+                loaded = false;
+                teamsByUser = new AdjacencyTable();
+                usersByTeam = new AdjacencyTable();
+            }
+            if (pending != null) {
+                pending.add(update);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void link(AdjacencyTable teamsByUser, AdjacencyTable usersByTeam,
+                             int userId, String login, int teamId, String teamName) {
+        teamsByUser.declare(userId, login);
+        usersByTeam.declare(teamId, teamName);
+        teamsByUser.addEdge(userId, teamId);
+        usersByTeam.addEdge(teamId, userId);
+    }
+}
@@ -0,0 +1,12 @@
+package com.epam.rd.java.basic.task7.db.metrics;
+
+/**
+ * JMX view of a {@code DBManager}, registered as
+ * {@code com.epam.rd.java.basic.task7:type=DBManager,name=<n>} when {@code metrics.jmx=true}.
+ */
+public interface DBManagerMXBean {
+
+    MetricsSnapshot getMetrics();
+
+    void resetMetrics();
+}
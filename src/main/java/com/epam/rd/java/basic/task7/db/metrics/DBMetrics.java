@@ -0,0 +1,87 @@
+package com.epam.rd.java.basic.task7.db.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Default {@link MetricsRecorder}: per-operation {@link LongAdder} counters and a
+ * {@link LatencyHistogram}, held in arrays indexed by {@link Operation#ordinal()}.
+ */
+public class DBMetrics implements MetricsRecorder {
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private final LongAdder[] calls = new LongAdder[OPERATIONS.length];
+    private final LongAdder[] errors = new LongAdder[OPERATIONS.length];
+    private final LongAdder[] rows = new LongAdder[OPERATIONS.length];
+    private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+    private final LatencyHistogram acquireTimes = new LatencyHistogram();
+
+    public DBMetrics() {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            calls[i] = new LongAdder();
+            errors[i] = new LongAdder();
+            rows[i] = new LongAdder();
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    @Override
+    public long start() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public void completed(Operation operation, long start, long rowCount) {
+        int i = operation.ordinal();
+        latencies[i].record(System.nanoTime() - start);
+        calls[i].increment();
+        rows[i].add(rowCount);
+    }
+
+    @Override
+    public void failed(Operation operation, long start) {
+        int i = operation.ordinal();
+        latencies[i].record(System.nanoTime() - start);
+        calls[i].increment();
+        errors[i].increment();
+    }
+
+    @Override
+    public void acquired(long start) {
+        acquireTimes.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Operations that have been called at least once.
+     */
+    @Override
+    public List<OperationSnapshot> operations() {
+        List<OperationSnapshot> snapshots = new ArrayList<>();
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            long count = calls[i].sum();
+            if (count > 0) {
+                snapshots.add(new OperationSnapshot(OPERATIONS[i], count, errors[i].sum(), rows[i].sum(),
+                        latencies[i].snapshot()));
+            }
+        }
+        return snapshots;
+    }
+
+    @Override
+    public HistogramSnapshot acquireTimes() {
+        return acquireTimes.snapshot();
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            calls[i].reset();
+            errors[i].reset();
+            rows[i].reset();
+            latencies[i].reset();
+        }
+        acquireTimes.reset();
+    }
+}
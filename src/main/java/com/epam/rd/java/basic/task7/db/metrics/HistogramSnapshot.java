@@ -0,0 +1,60 @@
+package com.epam.rd.java.basic.task7.db.metrics;
+
+/**
+ * Point-in-time view of a {@link LatencyHistogram}; latencies are in nanoseconds.
+ */
+public final class HistogramSnapshot {
+
+    private final long count;
+    private final double mean;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+    public HistogramSnapshot(long count, double mean, long p50, long p90, long p99, long p999, long max) {
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public long getP50() {
+        return p50;
+    }
+
+    public long getP90() {
+        return p90;
+    }
+
+    public long getP99() {
+        return p99;
+    }
+
+    public long getP999() {
+        return p999;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + String.format(", mean=%.1fus", mean / 1_000)
+                + ", p50=" + p50 / 1_000 + "us, p90=" + p90 / 1_000 + "us, p99=" + p99 / 1_000
+                + "us, p99.9=" + p999 / 1_000 + "us, max=" + max / 1_000 + "us";
+    }
+}
@@ -0,0 +1,66 @@
+package com.epam.rd.java.basic.task7.db.metrics;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Receives timings from {@code DBManager}. An operation calls {@link #start()} once and then
+ * either {@link #completed} or {@link #failed} with the value it returned; implementations must
+ * be thread-safe and should not allocate on these calls.
+ */
+public interface MetricsRecorder {
+
+    MetricsRecorder NOOP = new MetricsRecorder() {
+
+        @Override
+        public long start() {
+            return 0;
+        }
+
+        @Override
+        public void completed(Operation operation, long start, long rows) {
+        }
+
+        @Override
+        public void failed(Operation operation, long start) {
+        }
+
+        @Override
+        public void acquired(long start) {
+        }
+
+        @Override
+        public List<OperationSnapshot> operations() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public HistogramSnapshot acquireTimes() {
+            return new HistogramSnapshot(0, 0.0, 0, 0, 0, 0, 0);
+        }
+
+        @Override
+        public void reset() {
+        }
+    };
+
+    /**
+     * Returns the start timestamp to hand back to the other methods.
+     */
+    long start();
+
+    void completed(Operation operation, long start, long rows);
+
+    void failed(Operation operation, long start);
+
+    /**
+     * Records the time spent waiting for a pooled connection.
+     */
+    void acquired(long start);
+
+    List<OperationSnapshot> operations();
+
+    HistogramSnapshot acquireTimes();
+
+    void reset();
+}
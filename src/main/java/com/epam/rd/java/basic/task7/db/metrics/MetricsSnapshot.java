@@ -0,0 +1,73 @@
+package com.epam.rd.java.basic.task7.db.metrics;
+
+import com.epam.rd.java.basic.task7.db.cache.CacheStats;
+
+import java.util.List;
+
+public final class MetricsSnapshot {
+
+    private final List<OperationSnapshot> operations;
+    private final HistogramSnapshot connectionAcquire;
+    private final int activeConnections;
+    private final CacheStats userCache;
+    private final CacheStats teamCache;
+    private final CacheStats statementCache;
+
+    public MetricsSnapshot(List<OperationSnapshot> operations, HistogramSnapshot connectionAcquire,
+                           int activeConnections, CacheStats userCache, CacheStats teamCache,
+                           CacheStats statementCache) {
+        this.operations = operations;
+        this.connectionAcquire = connectionAcquire;
+        this.activeConnections = activeConnections;
+        this.userCache = userCache;
+        this.teamCache = teamCache;
+        this.statementCache = statementCache;
+    }
+
+    public List<OperationSnapshot> getOperations() {
+        return operations;
+    }
+
+    public OperationSnapshot getOperation(Operation operation) {
+        for (OperationSnapshot snapshot : operations) {
+            if (snapshot.getOperation() == operation) {
+                return snapshot;
+            }
+        }
+        return new OperationSnapshot(operation, 0, 0, 0, new HistogramSnapshot(0, 0.0, 0, 0, 0, 0, 0));
+    }
+
+    public HistogramSnapshot getConnectionAcquire() {
+        return connectionAcquire;
+    }
+
+    public int getActiveConnections() {
+        return activeConnections;
+    }
+
+    public CacheStats getUserCache() {
+        return userCache;
+    }
+
+    public CacheStats getTeamCache() {
+        return teamCache;
+    }
+
+    public CacheStats getStatementCache() {
+        return statementCache;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (OperationSnapshot operation : operations) {
+            sb.append(operation).append('\n');
+        }
+        return sb.append("connection acquire: ").append(connectionAcquire)
+                .append("\nactive connections: ").append(activeConnections)
+                .append("\nuser cache: ").append(userCache)
+                .append("\nteam cache: ").append(teamCache)
+                .append("\nstatement cache: ").append(statementCache)
+                .toString();
+    }
+}
@@ -0,0 +1,39 @@
+package com.epam.rd.java.basic.task7.db.metrics;
+
+/**
+ * Instrumented {@code DBManager} operations.
+ */
+public enum Operation {
+    FIND_ALL_USERS,
+    FIND_ALL_TEAMS,
+    FIND_USERS,
+    FIND_TEAMS,
+    STREAM_USERS,
+    STREAM_TEAMS,
+    INSERT_USER,
+    INSERT_TEAM,
+    INSERT_USERS,
+    INSERT_TEAMS,
+    DELETE_USERS,
+    DELETE_TEAM,
+    GET_USER,
+    GET_TEAM,
+    GET_USERS,
+    GET_TEAMS,
+    /** The IN queries that serve coalesced GET_USER calls. */
+    COALESCED_USERS,
+    /** The IN queries that serve coalesced GET_TEAM calls. */
+    COALESCED_TEAMS,
+    SET_TEAMS_FOR_USER,
+    REPLACE_TEAMS_FOR_USER,
+    ADD_TEAMS_FOR_USER,
+    INSERT_MEMBERSHIPS,
+    GET_USER_TEAMS,
+    GET_TEAM_USERS,
+    COUNT_MEMBERS,
+    COUNT_TEAMS,
+    GET_TEAMS_FOR_USERS,
+    UPDATE_TEAM,
+    /** Reads sent to the primary because no replica could hand out a connection at once. */
+    REPLICA_FALLBACK
+}
@@ -0,0 +1,43 @@
+package com.epam.rd.java.basic.task7.db.metrics;
+
+public final class OperationSnapshot {
+
+    private final Operation operation;
+    private final long calls;
+    private final long errors;
+    private final long rows;
+    private final HistogramSnapshot latency;
+
+    public OperationSnapshot(Operation operation, long calls, long errors, long rows, HistogramSnapshot latency) {
+        this.operation = operation;
+        this.calls = calls;
+        this.errors = errors;
+        this.rows = rows;
+        this.latency = latency;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public HistogramSnapshot getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String toString() {
+        return operation + ": calls=" + calls + ", errors=" + errors + ", rows=" + rows + ", " + latency;
+    }
+}
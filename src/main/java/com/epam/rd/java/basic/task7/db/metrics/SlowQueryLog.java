@@ -0,0 +1,338 @@
+package com.epam.rd.java.basic.task7.db.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Logs prepared statements slower than a threshold, with the name the owner of the SQL
+ * {@link #register registered} for it, the bound parameters, the row count, the elapsed time and the time the connection
+ * took to acquire. A query is timed from execution until its result set or statement is closed,
+ * so fetching is included.
+ * <p>
+ * Statements are observed through proxies around the pooled connection. Slow entries are handed
+ * to a daemon thread through a bounded queue and written to the {@code java.util.logging} logger
+ * of this class; when the queue is full the entry is dropped and counted rather than blocking the
+ * caller.
+ */
+public class SlowQueryLog implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(SlowQueryLog.class.getName());
+    private static final Entry STOP = new Entry(null, null, 0, 0, 0);
+
+    private final long thresholdNanos;
+    private final Map<String, String> exactNames = new ConcurrentHashMap<>();
+    private final Map<String, String> resolvedNames = new ConcurrentHashMap<>();
+    private final BlockingQueue<Entry> queue;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread appender;
+
+    /** Longest prefix first, replaced as a whole by {@link #register}. */
+    private volatile List<Template> templates = new ArrayList<>();
+
+    public SlowQueryLog(long thresholdMillis, int queueCapacity) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.appender = new Thread(this::run, "db-slow-query-log");
+        this.appender.setDaemon(true);
+        this.appender.start();
+    }
+
+    public Connection wrap(Connection connection, long acquireNanos) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(connection, acquireNanos));
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Writes out the entries already queued, waiting at most a second.
+     */
+    @Override
+    public void close() {
+        try {
+            if (queue.offer(STOP, 1, TimeUnit.SECONDS)) {
+                appender.join(1_000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Names the given SQL constants, keyed by name. SQL with a {@code %s} placeholder also names
+     * every statement formatted from it. Where two names share one SQL the first registered wins;
+     * statements matching nothing registered are logged as "SQL".
+     */
+    public synchronized void register(Map<String, String> sqlByName) {
+        List<Template> updated = new ArrayList<>(templates);
+        sqlByName.forEach((name, sql) -> {
+            exactNames.putIfAbsent(sql, name);
+            updated.add(new Template(sql, name));
+        });
+        updated.sort(Comparator.comparingInt((Template t) -> t.prefix.length()).reversed());
+        templates = updated;
+        resolvedNames.clear();
+    }
+
+    String nameOf(String sql) {
+        String name = exactNames.get(sql);
+        if (name != null) {
+            return name;
+        }
+        return resolvedNames.computeIfAbsent(sql, s -> {
+            for (Template template : templates) {
+                if (template.matches(s)) {
+                    return template.name;
+                }
+            }
+            return "SQL";
+        });
+    }
+
+    private void record(String sql, Object[] params, int paramCount, long rows, long elapsedNanos,
+                        long acquireNanos) {
+        if (elapsedNanos < thresholdNanos) {
+            return;
+        }
+        Entry entry = new Entry(sql, Arrays.copyOf(params, paramCount), rows, elapsedNanos, acquireNanos);
+        if (!queue.offer(entry)) {
+            dropped.increment();
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                Entry entry = queue.take();
+                if (entry == STOP) {
+                    return;
+                }
+                if (LOG.isLoggable(Level.WARNING)) {
+                    LOG.warning(format(entry));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String format(Entry entry) {
+        return String.format("%s took %.3f ms (connection acquire %.3f ms), %d rows, params %s: %s",
+                nameOf(entry.sql), entry.elapsedNanos / 1e6, entry.acquireNanos / 1e6, entry.rows,
+                Arrays.toString(entry.params), entry.sql);
+    }
+
+    private static final class Entry {
+
+        private final String sql;
+        private final Object[] params;
+        private final long rows;
+        private final long elapsedNanos;
+        private final long acquireNanos;
+
+        private Entry(String sql, Object[] params, long rows, long elapsedNanos, long acquireNanos) {
+            this.sql = sql;
+            this.params = params;
+            this.rows = rows;
+            this.elapsedNanos = elapsedNanos;
+            this.acquireNanos = acquireNanos;
+        }
+    }
+
+    /**
+     * Matches statements built from a constant: IN lists formatted into {@code %s}, and
+     * dialect-specific suffixes such as {@code FETCH FIRST ? ROWS ONLY}.
+     */
+    private static final class Template {
+
+        private final String prefix;
+        private final boolean formatted;
+        private final String name;
+
+        private Template(String sql, String name) {
+            int placeholder = sql.indexOf("%s");
+            this.prefix = placeholder < 0 ? sql : sql.substring(0, placeholder);
+            this.formatted = placeholder >= 0;
+            this.name = name;
+        }
+
+        private boolean matches(String sql) {
+            if (!sql.startsWith(prefix)) {
+                return false;
+            }
+            return formatted || sql.length() == prefix.length() || sql.charAt(prefix.length()) == ' ';
+        }
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+
+        private final Connection connection;
+        private final long acquireNanos;
+
+        private ConnectionHandler(Connection connection, long acquireNanos) {
+            this.connection = connection;
+            this.acquireNanos = acquireNanos;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = invokeTarget(connection, method, args);
+            if (method.getName().equals("prepareStatement") && result instanceof PreparedStatement) {
+                return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                        new Class<?>[]{PreparedStatement.class},
+                        new StatementHandler((PreparedStatement) result, (String) args[0], acquireNanos));
+            }
+            return result;
+        }
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+
+        private final PreparedStatement statement;
+        private final String sql;
+        private final long acquireNanos;
+        private Object[] params = new Object[8];
+        private int paramCount;
+        private ResultSet openResult;
+        private long queryStart;
+        private long queryRows;
+
+        private StatementHandler(PreparedStatement statement, String sql, long acquireNanos) {
+            this.statement = statement;
+            this.sql = sql;
+            this.acquireNanos = acquireNanos;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                bind((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                return invokeTarget(statement, method, args);
+            }
+            switch (name) {
+                case "clearParameters":
+                    paramCount = 0;
+                    break;
+                case "executeQuery":
+                    if (args == null) {
+                        finishQuery();
+                        queryStart = System.nanoTime();
+                        queryRows = 0;
+                        ResultSet rs = (ResultSet) invokeTarget(statement, method, args);
+                        openResult = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                                new Class<?>[]{ResultSet.class}, new ResultSetHandler(rs, this));
+                        return openResult;
+                    }
+                    break;
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                case "executeBatch":
+                case "executeLargeBatch":
+                    if (args == null) {
+                        long start = System.nanoTime();
+                        Object result = invokeTarget(statement, method, args);
+                        record(sql, params, paramCount, rowCount(result), System.nanoTime() - start, acquireNanos);
+                        return result;
+                    }
+                    break;
+                case "close":
+                    finishQuery();
+                    break;
+                default:
+                    break;
+            }
+            return invokeTarget(statement, method, args);
+        }
+
+        private void bind(int index, Object value) {
+            if (index > params.length) {
+                params = Arrays.copyOf(params, Math.max(index, params.length * 2));
+            }
+            params[index - 1] = value;
+            paramCount = Math.max(paramCount, index);
+        }
+
+        private void finishQuery() {
+            if (openResult != null) {
+                openResult = null;
+                record(sql, params, paramCount, queryRows, System.nanoTime() - queryStart, acquireNanos);
+            }
+        }
+
+        private long rowCount(Object result) {
+            if (result instanceof Number) {
+                return ((Number) result).longValue();
+            }
+            long rows = 0;
+            if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    rows += Math.max(count, 0);
+                }
+            } else if (result instanceof long[]) {
+                for (long count : (long[]) result) {
+                    rows += Math.max(count, 0);
+                }
+            }
+            return rows;
+        }
+    }
+
+    private static final class ResultSetHandler implements InvocationHandler {
+
+        private final ResultSet resultSet;
+        private final StatementHandler statement;
+
+        private ResultSetHandler(ResultSet resultSet, StatementHandler statement) {
+            this.resultSet = resultSet;
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = invokeTarget(resultSet, method, args);
+            switch (method.getName()) {
+                case "next":
+                    if (Boolean.TRUE.equals(result)) {
+                        statement.queryRows++;
+                    }
+                    break;
+                case "close":
+                    if (statement.openResult == proxy) {
+                        statement.finishQuery();
+                    }
+                    break;
+                default:
+                    break;
+            }
+            return result;
+        }
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
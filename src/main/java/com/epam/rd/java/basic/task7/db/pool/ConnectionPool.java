@@ -0,0 +1,299 @@
+package com.epam.rd.java.basic.task7.db.pool;
+
+import com.epam.rd.java.basic.task7.db.cache.CacheStats;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded pool of physical JDBC connections. Borrowed connections are proxies:
+ * closing one hands the physical connection back to the pool. Each physical connection
+ * keeps its own {@link StatementCache}.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private final String url;
+    private final int minSize;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final boolean validateOnBorrow;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+    private final BlockingDeque<PhysicalConnection> idle = new LinkedBlockingDeque<>();
+    private final AtomicInteger total = new AtomicInteger();
+    private final LongAdder statementHits = new LongAdder();
+    private final LongAdder statementMisses = new LongAdder();
+    private final LongAdder statementEvictions = new LongAdder();
+    private final LongAdder statementsCached = new LongAdder();
+    private final ScheduledExecutorService evictor;
+    private final LongSupplier clock;
+
+    private volatile boolean closed;
+
+    public ConnectionPool(String url, PoolSettings settings) {
+        this(url, settings, System::currentTimeMillis);
+    }
+
+    ConnectionPool(String url, PoolSettings settings, LongSupplier clock) {
+        if (settings.getMaxSize() < 1 || settings.getMinSize() < 0 || settings.getMinSize() > settings.getMaxSize()) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + settings.getMinSize()
+                    + ", max=" + settings.getMaxSize());
+        }
+        this.url = url;
+        this.clock = clock;
+        this.minSize = settings.getMinSize();
+        this.maxSize = settings.getMaxSize();
+        this.acquireTimeoutMillis = settings.getAcquireTimeoutMillis();
+        this.idleTimeoutMillis = settings.getIdleTimeoutMillis();
+        this.validateOnBorrow = settings.isValidateOnBorrow();
+        this.validationTimeoutSeconds = settings.getValidationTimeoutSeconds();
+        this.statementCacheSize = settings.getStatementCacheSize();
+        this.permits = new Semaphore(maxSize, true);
+
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "db-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleWithFixedDelay(this::maintain, 0,
+                settings.getEvictionIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public Connection getConnection() throws SQLException {
+        return getConnection(acquireTimeoutMillis);
+    }
+
+    /**
+     * Like {@link #getConnection()} but fails at once with a {@link SQLTransientConnectionException}
+     * instead of waiting when every connection is borrowed.
+     */
+    public Connection tryGetConnection() throws SQLException {
+        return getConnection(0);
+    }
+
+    private Connection getConnection(long timeoutMillis) throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException("Timed out after " + timeoutMillis
+                        + " ms waiting for a connection (pool size " + maxSize + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+        try {
+            PhysicalConnection physical = borrowIdle();
+            if (physical == null) {
+                physical = open();
+            }
+            return wrap(physical);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public int getTotalConnections() {
+        return total.get();
+    }
+
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    public int getActiveConnections() {
+        return maxSize - permits.availablePermits();
+    }
+
+    /**
+     * Statement cache counters summed over every open connection, idle or borrowed.
+     */
+    public CacheStats getStatementCacheStats() {
+        return new CacheStats(statementHits.sum(), statementMisses.sum(), statementEvictions.sum(),
+                (int) statementsCached.sum());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PhysicalConnection physical;
+        while ((physical = idle.pollFirst()) != null) {
+            discard(physical);
+        }
+    }
+
+    private PhysicalConnection borrowIdle() {
+        PhysicalConnection physical;
+        while ((physical = idle.pollFirst()) != null) {
+            if (!validateOnBorrow || isValid(physical.connection)) {
+                return physical;
+            }
+            discard(physical);
+        }
+        return null;
+    }
+
+    private PhysicalConnection open() throws SQLException {
+        Connection connection = DriverManager.getConnection(url);
+        total.incrementAndGet();
+        return new PhysicalConnection(connection);
+    }
+
+    private boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void release(PhysicalConnection physical) {
+        Connection connection = physical.connection;
+        try {
+            if (closed || connection.isClosed() || total.get() > maxSize) {
+                discard(physical);
+                return;
+            }
+            if (physical.statements != null) {
+                physical.statements.checkInAll();
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            physical.releasedAt = clock.getAsLong();
+            idle.offerFirst(physical);
+        } catch (SQLException e) {
+            discard(physical);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(PhysicalConnection physical) {
+        total.decrementAndGet();
+        if (physical.statements != null) {
+            statementsCached.add(-physical.statements.size());
+        }
+        try {
+            physical.connection.close();
+        } catch (SQLException ignored) {
+            // the connection is dropped from the pool either way
+        }
+    }
+
+    /**
+     * Closes connections idle for longer than the idle timeout, down to the minimum size, and
+     * opens connections up to it. Runs every eviction interval.
+     */
+    void maintain() {
+        long deadline = clock.getAsLong() - idleTimeoutMillis;
+        Iterator<PhysicalConnection> it = idle.descendingIterator();
+        while (it.hasNext() && total.get() > minSize) {
+            PhysicalConnection physical = it.next();
+            if (physical.releasedAt < deadline && idle.remove(physical)) {
+                discard(physical);
+            }
+        }
+        try {
+            while (!closed && total.get() < minSize) {
+                idle.offerLast(open());
+            }
+        } catch (SQLException e) {
+            // the database may not be up yet; connections are opened on demand
+        }
+    }
+
+    private Connection wrap(PhysicalConnection physical) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new PooledConnectionHandler(physical));
+    }
+
+    private final class PhysicalConnection {
+
+        private final Connection connection;
+        private final StatementCache statements;
+        private volatile long releasedAt = clock.getAsLong();
+
+        private PhysicalConnection(Connection connection) {
+            this.connection = connection;
+            this.statements = statementCacheSize > 0
+                    ? new StatementCache(connection, statementCacheSize, statementHits, statementMisses,
+                    statementEvictions, statementsCached)
+                    : null;
+        }
+    }
+
+    private final class PooledConnectionHandler implements InvocationHandler {
+
+        private final PhysicalConnection physical;
+        private boolean released;
+
+        private PooledConnectionHandler(PhysicalConnection physical) {
+            this.physical = physical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        release(physical);
+                    }
+                    return null;
+                case "isClosed":
+                    return released || physical.connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + physical.connection;
+                default:
+                    if (released) {
+                        throw new SQLException("Connection has been returned to the pool");
+                    }
+                    if (physical.statements != null && method.getName().equals("prepareStatement")) {
+                        if (args.length == 1) {
+                            return physical.statements.prepare((Connection) proxy, (String) args[0],
+                                    Statement.NO_GENERATED_KEYS);
+                        }
+                        if (args.length == 2 && args[1] instanceof Integer) {
+                            return physical.statements.prepare((Connection) proxy, (String) args[0],
+                                    (Integer) args[1]);
+                        }
+                    }
+                    try {
+                        return method.invoke(physical.connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.epam.rd.java.basic.task7.db.pool;
+
+public class PoolSettings {
+
+    private int minSize = 1;
+    private int maxSize = 10;
+    private long acquireTimeoutMillis = 30_000;
+    private long idleTimeoutMillis = 600_000;
+    private long evictionIntervalMillis = 30_000;
+    private boolean validateOnBorrow = true;
+    private int validationTimeoutSeconds = 5;
+    private int statementCacheSize = 64;
+
+    public PoolSettings() {
+    }
+
+    public PoolSettings(PoolSettings other) {
+        this.minSize = other.minSize;
+        this.maxSize = other.maxSize;
+        this.acquireTimeoutMillis = other.acquireTimeoutMillis;
+        this.idleTimeoutMillis = other.idleTimeoutMillis;
+        this.evictionIntervalMillis = other.evictionIntervalMillis;
+        this.validateOnBorrow = other.validateOnBorrow;
+        this.validationTimeoutSeconds = other.validationTimeoutSeconds;
+        this.statementCacheSize = other.statementCacheSize;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public void setMinSize(int minSize) {
+        this.minSize = minSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public long getAcquireTimeoutMillis() {
+        return acquireTimeoutMillis;
+    }
+
+    public void setAcquireTimeoutMillis(long acquireTimeoutMillis) {
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    public long getEvictionIntervalMillis() {
+        return evictionIntervalMillis;
+    }
+
+    public void setEvictionIntervalMillis(long evictionIntervalMillis) {
+        this.evictionIntervalMillis = evictionIntervalMillis;
+    }
+
+    public boolean isValidateOnBorrow() {
+        return validateOnBorrow;
+    }
+
+    public void setValidateOnBorrow(boolean validateOnBorrow) {
+        this.validateOnBorrow = validateOnBorrow;
+    }
+
+    public int getValidationTimeoutSeconds() {
+        return validationTimeoutSeconds;
+    }
+
+    public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+}
@@ -0,0 +1,203 @@
+package com.epam.rd.java.basic.task7.db.pool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU cache of prepared statements for one physical connection, keyed by SQL text.
+ * Closing a handed-out statement resets it and returns it to the cache. Not thread-safe:
+ * a physical connection is only ever used by the thread that borrowed it.
+ */
+final class StatementCache {
+
+    private final Connection physical;
+    private final int maxSize;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private final LongAdder cached;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The counters are shared by all caches of a pool; {@code cached} tracks the number of
+     * statements held, so the pool can report it without touching caches of borrowed connections.
+     */
+    StatementCache(Connection physical, int maxSize, LongAdder hits, LongAdder misses, LongAdder evictions,
+                   LongAdder cached) {
+        this.physical = physical;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.cached = cached;
+    }
+
+    PreparedStatement prepare(Connection owner, String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? sql + "\u0000keys" : sql;
+        Entry entry = entries.get(key);
+        if (entry != null && entry.inUse) {
+            // the same SQL is already open on this connection; hand out a private statement
+            misses.increment();
+            return physical.prepareStatement(sql, autoGeneratedKeys);
+        }
+        if (entry != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            entry = new Entry(key, physical.prepareStatement(sql, autoGeneratedKeys));
+            entries.put(key, entry);
+            cached.increment();
+            evict();
+        }
+        entry.inUse = true;
+        entry.lease++;
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, new Handler(entry, entry.lease, owner));
+    }
+
+    /**
+     * Returns statements the borrower forgot to close when the connection goes back to the pool.
+     */
+    void checkInAll() {
+        List<Entry> outstanding = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.inUse) {
+                outstanding.add(entry);
+            }
+        }
+        for (Entry entry : outstanding) {
+            checkIn(entry, null, true);
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void evict() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (entries.size() > maxSize && it.hasNext()) {
+            Entry eldest = it.next();
+            if (!eldest.inUse) {
+                it.remove();
+                cached.decrement();
+                evictions.increment();
+                closeQuietly(eldest.statement);
+            }
+        }
+    }
+
+    private void checkIn(Entry entry, ResultSet lastResult, boolean dirty) {
+        entry.lease++;
+        try {
+            if (lastResult != null) {
+                lastResult.close();
+            }
+            if (dirty) {
+                entry.statement.setMaxRows(0);
+                entry.statement.setFetchSize(0);
+                entry.statement.setQueryTimeout(0);
+            }
+            entry.statement.clearParameters();
+            entry.statement.clearBatch();
+            entry.inUse = false;
+        } catch (SQLException e) {
+            if (entries.remove(entry.key, entry)) {
+                cached.decrement();
+            }
+            closeQuietly(entry.statement);
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+            // the statement is dropped from the cache either way
+        }
+    }
+
+    private static final class Entry {
+
+        private final String key;
+        private final PreparedStatement statement;
+        private boolean inUse;
+        private long lease;
+
+        private Entry(String key, PreparedStatement statement) {
+            this.key = key;
+            this.statement = statement;
+        }
+    }
+
+    private final class Handler implements InvocationHandler {
+
+        private final Entry entry;
+        private final long lease;
+        private final Connection owner;
+        private boolean closed;
+        private boolean dirty;
+        private ResultSet lastResult;
+
+        private Handler(Entry entry, long lease, Connection owner) {
+            this.entry = entry;
+            this.lease = lease;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        if (entry.lease == lease) {
+                            checkIn(entry, lastResult, dirty);
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || entry.lease != lease;
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached" + entry.statement;
+                default:
+                    if (closed || entry.lease != lease) {
+                        throw new SQLException("Statement is closed");
+                    }
+                    if (name.equals("setMaxRows") || name.equals("setFetchSize")
+                            || name.equals("setQueryTimeout") || name.equals("setLargeMaxRows")) {
+                        dirty = true;
+                    }
+                    Object result;
+                    try {
+                        result = method.invoke(entry.statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (result instanceof ResultSet && name.startsWith("execute")) {
+                        lastResult = (ResultSet) result;
+                    }
+                    return result;
+            }
+        }
+    }
+}
@@ -43,6 +43,9 @@ public class TaskTest {
 			+ "	UNIQUE (user_id, team_id)" 
 			+ ")";
 
+	private static final String CREATE_USERS_TEAMS_INDEX =
+			"CREATE INDEX users_teams_team_user ON users_teams (team_id, user_id)";
+
 	private static final String DROP_USERS_TEAMS_TABLE = "DROP TABLE users_teams";
 
 	private static final String DROP_USERS_TABLE = "DROP TABLE users";
@@ -87,6 +90,7 @@ public class TaskTest {
 		con.createStatement().executeUpdate(CREATE_USERS_TABLE);
 		con.createStatement().executeUpdate(CREATE_TEAMS_TABLE);
 		con.createStatement().executeUpdate(CREATE_USERS_TEAMS_TABLE);
+		con.createStatement().executeUpdate(CREATE_USERS_TEAMS_INDEX);
 	}
 
 	@AfterEach
@@ -167,6 +171,62 @@ public class TaskTest {
 		assertEquals(asList(teams.get(2), teams.get(4)), userTeams);
 	}
 
+	@Test
+	void testTeamsForUsers() throws DBException {
+		List<User> users = createAndInsertUsers(0, 4);
+		List<Team> teams = createAndInsertTeams(0, 3);
+		dbm.setTeamsForUser(users.get(1), teams.get(0));
+		dbm.setTeamsForUser(users.get(2), teams.get(0), teams.get(1), teams.get(2));
+
+		Map<User, List<Team>> userTeams = dbm.getTeamsForUsers(users);
+
+		assertEquals(users, new ArrayList<>(userTeams.keySet()));
+		assertEquals(Collections.emptyList(), userTeams.get(users.get(0)));
+		assertEquals(teams.subList(0, 1), userTeams.get(users.get(1)));
+		assertEquals(teams, sort(userTeams.get(users.get(2)), Team::getName));
+		assertEquals(Collections.emptyList(), userTeams.get(users.get(3)));
+	}
+
+	@Test
+	void testBatchInsertAndDelete() throws DBException {
+		List<User> users = IntStream.range(0, 7).mapToObj(x -> User.createUser("user" + x)).collect(Collectors.toList());
+		List<Team> teams = IntStream.range(0, 3).mapToObj(x -> Team.createTeam("team" + x)).collect(Collectors.toList());
+
+		dbm.insertUsers(users);
+		dbm.insertTeams(teams);
+
+		assertEquals(users.size(), users.stream().mapToInt(User::getId).filter(id -> id > 0).distinct().count());
+		for (User user : users) {
+			assertEquals(user.getId(), dbm.getUser(user.getLogin()).getId());
+		}
+		for (Team team : teams) {
+			assertEquals(team.getId(), dbm.getTeam(team.getName()).getId());
+		}
+
+		dbm.setTeamsForUser(users.get(0), teams.toArray(Team[]::new));
+		assertThrows(DBException.class, () -> dbm.setTeamsForUser(users.get(1), teams.get(0), teams.get(0)));
+		assertEquals(Collections.emptyList(), dbm.getUserTeams(users.get(1)));
+
+		dbm.deleteUsers(users.subList(0, 5).toArray(User[]::new));
+		assertEquals(users.subList(5, 7), sort(dbm.findAllUsers(), User::getLogin));
+	}
+
+	@Test
+	void testTeamUsersAndCounts() throws DBException {
+		List<User> users = createAndInsertUsers(0, 3);
+		List<Team> teams = createAndInsertTeams(0, 2);
+
+		dbm.setTeamsForUser(users.get(0), teams.get(0), teams.get(1));
+		dbm.setTeamsForUser(users.get(2), teams.get(0));
+
+		assertEquals(asList(users.get(0), users.get(2)), sort(dbm.getTeamUsers(teams.get(0)), User::getLogin));
+		assertEquals(asList(users.get(0)), dbm.getTeamUsers(teams.get(1)));
+		assertEquals(2, dbm.countMembers(teams.get(0)));
+		assertEquals(1, dbm.countMembers(teams.get(1)));
+		assertEquals(2, dbm.countTeams(users.get(0)));
+		assertEquals(0, dbm.countTeams(users.get(1)));
+	}
+
 	void test6() throws DBException {
 		User user = User.createUser("user");
 		Team teamA = Team.createTeam("A");
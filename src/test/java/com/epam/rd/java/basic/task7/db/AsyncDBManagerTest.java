@@ -0,0 +1,61 @@
+package com.epam.rd.java.basic.task7.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.*;
+
+import com.epam.rd.java.basic.task7.db.entity.*;
+
+public class AsyncDBManagerTest extends DatabaseTest {
+
+	@Test
+	void testOperationsCompleteAsynchronously() throws Exception {
+		try (AsyncDBManager async = AsyncDBManager.create(dbm)) {
+			User user = User.createUser("async");
+			Team team = Team.createTeam("asyncTeam");
+
+			CompletableFuture<List<Team>> teams = async.insertUser(user)
+					.thenCombine(async.insertTeam(team), (a, b) -> a && b)
+					.thenCompose(inserted -> async.setTeamsForUser(user, team))
+					.thenCompose(set -> async.getUserTeams(user));
+
+			assertEquals(Collections.singletonList(team), teams.get(10, TimeUnit.SECONDS));
+			assertEquals(user.getId(), async.getUser("async").get(10, TimeUnit.SECONDS).getId());
+		}
+	}
+
+	@Test
+	void testFailuresCompleteExceptionally() throws Exception {
+		try (AsyncDBManager async = AsyncDBManager.create(dbm)) {
+			ExecutionException ex = assertThrows(ExecutionException.class,
+					() -> async.setTeamsForUser(null).get(10, TimeUnit.SECONDS));
+			assertTrue(ex.getCause() instanceof DBException);
+		}
+	}
+
+	@Test
+	void testCallersAreThrottledWhenAllSlotsAreBusy() throws Exception {
+		Connection lock = DriverManager.getConnection(db.getUrl());
+		lock.setAutoCommit(false);
+		lock.createStatement().execute("LOCK TABLE teams IN EXCLUSIVE MODE");
+		try (AsyncDBManager async = new AsyncDBManager(dbm, 1, 100)) {
+			CompletableFuture<List<Team>> blocked = async.findAllTeams();
+			assertEquals(1, async.getPendingCalls());
+
+			CompletableFuture<List<Team>> rejected = async.findAllTeams();
+			assertTrue(rejected.isCompletedExceptionally(), "A call over the limit must not wait for a slot");
+			ExecutionException ex = assertThrows(ExecutionException.class, rejected::get);
+			assertTrue(ex.getCause() instanceof DBException);
+			assertTrue(ex.getCause().getCause() instanceof RejectedExecutionException);
+
+			lock.commit();
+			assertNotNull(blocked.get(10, TimeUnit.SECONDS));
+		} finally {
+			lock.close();
+		}
+	}
+}
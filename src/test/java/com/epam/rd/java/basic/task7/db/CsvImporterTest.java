@@ -0,0 +1,96 @@
+package com.epam.rd.java.basic.task7.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.*;
+
+import org.junit.jupiter.api.*;
+
+import com.epam.rd.java.basic.task7.db.entity.*;
+
+public class CsvImporterTest extends DatabaseTest {
+
+	@Override
+	protected void configure(Properties properties) {
+		properties.setProperty("batch.size", "100");
+	}
+
+	@Test
+	void testImportUsersTeamsAndMemberships() throws Exception {
+		CsvImporter importer = new CsvImporter(dbm, true);
+
+		ImportResult users = importer.importUsers(new GeneratedCsv("login", 20_000, i -> "u" + i));
+		assertEquals(20_000, users.getRows());
+		assertEquals(20_000, db.count("users"));
+		assertTrue(users.getRowsPerSecond() > 0);
+
+		ImportResult teams = importer.importTeams(new StringReader("name\r\nteamA\r\n\"team,B\"\r\nteamC"));
+		assertEquals(3, teams.getRows());
+		assertEquals(3, db.count("teams"));
+		assertEquals("team,B", dbm.getTeam("team,B").getName());
+		assertTrue(dbm.getTeam("team,B").getId() > 0);
+
+		ImportResult memberships = importer.importMemberships(new StringReader(
+				"login,team\nu1,teamA\nu1,\"team,B\"\nu2, teamC \nnobody,teamA\nu3,noteam\n"));
+		assertEquals(3, memberships.getRows());
+		assertEquals(2, memberships.getSkipped());
+		assertEquals(3, db.count("users_teams"));
+		assertEquals(2, dbm.getUserTeams(dbm.getUser("u1")).size());
+		assertEquals(Team.createTeam("teamC"), dbm.getUserTeams(dbm.getUser("u2")).get(0));
+	}
+
+	@Test
+	void testFailedBatchIsRolledBack() throws Exception {
+		CsvImporter importer = new CsvImporter(dbm, false);
+		int before = db.count("users");
+
+		assertThrows(DBException.class, () -> importer.importUsers(new StringReader("dup1\ndup1\n")));
+		assertEquals(before, db.count("users"));
+	}
+
+	/**
+	 * Produces a CSV document line by line without ever holding it in memory.
+	 */
+	private static class GeneratedCsv extends Reader {
+
+		private final String header;
+
+		private final int lines;
+
+		private final IntFunction<String> line;
+
+		private int next = -1;
+
+		private String current = "";
+
+		private int pos;
+
+		GeneratedCsv(String header, int lines, IntFunction<String> line) {
+			this.header = header;
+			this.lines = lines;
+			this.line = line;
+		}
+
+		@Override
+		public int read(char[] buf, int off, int len) {
+			if (pos == current.length()) {
+				if (next == lines) {
+					return -1;
+				}
+				current = (next < 0 ? header : line.apply(next)) + "\n";
+				next++;
+				pos = 0;
+			}
+			int n = Math.min(len, current.length() - pos);
+			current.getChars(pos, pos + n, buf, off);
+			pos += n;
+			return n;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package com.epam.rd.java.basic.task7.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Properties;
+
+import org.junit.jupiter.api.*;
+
+import com.epam.rd.java.basic.task7.db.config.AppConfig;
+import com.epam.rd.java.basic.task7.db.entity.*;
+
+public class DBManagerCacheTest extends DatabaseTest {
+
+	@Override
+	protected void configure(Properties properties) {
+		properties.setProperty("cache.enabled", "true");
+	}
+
+	@Override
+	protected boolean managerPerTest() {
+		return true;
+	}
+
+	@Test
+	void testLookupsAreServedFromCache() throws DBException {
+		User user = User.createUser("ivanov");
+		dbm.insertUser(user);
+
+		assertEquals(user.getId(), dbm.getUser("ivanov").getId());
+		assertEquals(user.getId(), dbm.getUser("ivanov").getId());
+		assertEquals(2, dbm.getUserCacheStats().getHits());
+
+		assertEquals(0, dbm.getUser("petrov").getId());
+		assertEquals(1, dbm.getUserCacheStats().getMisses());
+	}
+
+	@Test
+	void testWritesInvalidateCachedEntries() throws DBException {
+		User user = User.createUser("ivanov");
+		Team team = Team.createTeam("teamA");
+		dbm.insertUser(user);
+		dbm.insertTeam(team);
+		assertEquals(team.getId(), dbm.getTeam("teamA").getId());
+
+		team.setName("teamX");
+		dbm.updateTeam(team);
+		assertEquals(0, dbm.getTeam("teamA").getId());
+		assertEquals(team.getId(), dbm.getTeam("teamX").getId());
+
+		dbm.deleteTeam(team);
+		assertEquals(0, dbm.getTeam("teamX").getId());
+
+		dbm.deleteUsers(user);
+		assertEquals(0, dbm.getUser("ivanov").getId());
+	}
+
+	@Test
+	void testReloadToAnotherDatabaseDropsCachedIds() throws Exception {
+		User user = User.createUser("ivanov");
+		dbm.insertUser(user);
+		assertEquals(user.getId(), dbm.getUser("ivanov").getId());
+
+		try (TestDatabase other = new TestDatabase("cachedb2")) {
+			// ids in the other database run ahead, so the cached id cannot be right there
+			other.getConnection().createStatement().executeUpdate(
+					"INSERT INTO users (login) VALUES ('u1'), ('u2'), ('u3'), ('u4'), ('u5'), ('ivanov')");
+			Properties properties = other.properties();
+			properties.setProperty("cache.enabled", "true");
+			dbm.reload(AppConfig.of(properties));
+
+			int otherId = dbm.getUser("ivanov").getId();
+			assertNotEquals(user.getId(), otherId);
+			assertEquals(6, otherId);
+
+			properties.setProperty("cache.enabled", "false");
+			dbm.reload(AppConfig.of(properties));
+			assertEquals(otherId, dbm.getUser("ivanov").getId());
+			assertEquals(0, dbm.getUserCacheStats().getHits());
+			assertEquals(0, dbm.getUserCacheStats().getSize());
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package com.epam.rd.java.basic.task7.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.*;
+
+import com.epam.rd.java.basic.task7.db.entity.*;
+import com.epam.rd.java.basic.task7.db.events.*;
+import com.epam.rd.java.basic.task7.db.events.ChangeEvent.Type;
+
+public class DBManagerChangeEventsTest extends DatabaseTest {
+
+	@Test
+	void testCommittedWritesArePublished() throws Exception {
+		BlockingQueue<ChangeEvent> events = new LinkedBlockingQueue<>();
+		User user = User.createUser("watched");
+		Team teamA = Team.createTeam("teamA");
+		Team teamB = Team.createTeam("teamB");
+		try (ChangeFeed.Subscription subscription = dbm.subscribe(events::addAll)) {
+			dbm.insertUser(user);
+			dbm.insertTeams(List.of(teamA, teamB));
+			dbm.setTeamsForUser(user, teamA);
+			assertThrows(DBException.class, () -> dbm.setTeamsForUser(user, teamB, teamA));
+			dbm.replaceTeamsForUser(user, teamB);
+			dbm.addTeamsForUser(user, teamB, teamA);
+			teamB.setName("teamC");
+			dbm.updateTeam(teamB);
+			dbm.deleteTeam(teamA);
+			teamA.setName("gone");
+			dbm.updateTeam(teamA);
+			dbm.deleteUsers(user);
+
+			assertEvent(events.poll(5, TimeUnit.SECONDS), Type.USER_INSERTED, user.getId(), 0, "watched");
+			assertEvent(events.poll(5, TimeUnit.SECONDS), Type.TEAM_INSERTED, 0, teamA.getId(), "teamA");
+			assertEvent(events.poll(5, TimeUnit.SECONDS), Type.TEAM_INSERTED, 0, teamB.getId(), "teamB");
+			assertEvent(events.poll(5, TimeUnit.SECONDS), Type.MEMBERSHIP_ADDED, user.getId(), teamA.getId(), null);
+			// the rolled back setTeamsForUser published nothing
+			assertEvent(events.poll(5, TimeUnit.SECONDS), Type.MEMBERSHIP_REMOVED, user.getId(), teamA.getId(), null);
+			assertEvent(events.poll(5, TimeUnit.SECONDS), Type.MEMBERSHIP_ADDED, user.getId(), teamB.getId(), null);
+			// the membership of teamB already existed
+			assertEvent(events.poll(5, TimeUnit.SECONDS), Type.MEMBERSHIP_ADDED, user.getId(), teamA.getId(), null);
+			assertEvent(events.poll(5, TimeUnit.SECONDS), Type.TEAM_UPDATED, 0, teamB.getId(), "teamC");
+			assertEvent(events.poll(5, TimeUnit.SECONDS), Type.TEAM_DELETED, 0, teamA.getId(), "teamA");
+			// updating the deleted teamA changed no row and published nothing
+			assertEvent(events.poll(5, TimeUnit.SECONDS), Type.USER_DELETED, user.getId(), 0, "watched");
+		}
+		assertNull(events.poll(100, TimeUnit.MILLISECONDS));
+	}
+
+	private static void assertEvent(ChangeEvent event, Type type, int userId, int teamId, String name) {
+		assertNotNull(event, "no " + type + " event");
+		assertEquals(type, event.getType(), event.toString());
+		assertEquals(userId, event.getUserId(), event.toString());
+		assertEquals(teamId, event.getTeamId(), event.toString());
+		assertEquals(name, event.getName(), event.toString());
+	}
+}
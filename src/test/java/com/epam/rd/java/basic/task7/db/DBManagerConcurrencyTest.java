@@ -0,0 +1,160 @@
+package com.epam.rd.java.basic.task7.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Writer;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.stream.*;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.epam.rd.java.basic.task7.db.entity.*;
+import com.epam.rd.java.basic.task7.db.metrics.*;
+
+public class DBManagerConcurrencyTest extends DatabaseTest {
+
+	private static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+	private ExecutorService executor;
+
+	@Override
+	protected void configure(Properties properties) {
+		properties.setProperty("pool.maxSize", String.valueOf(THREADS));
+		properties.setProperty("cache.enabled", "true");
+	}
+
+	@Override
+	protected boolean managerPerTest() {
+		return true;
+	}
+
+	@BeforeEach
+	void setUp() {
+		executor = Executors.newFixedThreadPool(THREADS);
+	}
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void testGetInstanceReturnsOneInstanceToAllThreads(@TempDir Path dir) throws Exception {
+		Path config = dir.resolve("app.properties");
+		try (Writer out = Files.newBufferedWriter(config)) {
+			db.properties().store(out, null);
+		}
+		System.setProperty(DBManager.CONFIG_FILE_PROPERTY, config.toString());
+
+		List<Callable<DBManager>> calls = Collections.nCopies(THREADS * 4, DBManager::getInstance);
+		Set<DBManager> instances = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (Future<DBManager> future : executor.invokeAll(calls)) {
+			instances.add(future.get());
+		}
+		assertEquals(1, instances.size());
+		assertEquals(db.getUrl(), DBManager.getInstance().getConfig().getUrl());
+	}
+
+	@Test
+	void testConcurrentInsertsKeepLoginsUnique() throws Exception {
+		int logins = 50;
+		AtomicIntegerArray successes = new AtomicIntegerArray(logins);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			futures.add(executor.submit(() -> {
+				start.await();
+				for (int i = 0; i < logins; i++) {
+					try {
+						dbm.insertUser(User.createUser("user" + i));
+						successes.incrementAndGet(i);
+					} catch (DBException expected) {
+						// another thread inserted this login first
+					}
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> future : futures) {
+			future.get(60, TimeUnit.SECONDS);
+		}
+
+		for (int i = 0; i < logins; i++) {
+			assertEquals(1, successes.get(i), "login user" + i + " inserted more than once");
+		}
+		assertEquals(logins, db.count("users"));
+		Set<Integer> ids = dbm.findAllUsers().stream().map(User::getId).collect(Collectors.toSet());
+		assertEquals(logins, ids.size());
+		for (int i = 0; i < logins; i++) {
+			assertTrue(ids.contains(dbm.getUser("user" + i).getId()));
+		}
+	}
+
+	@Test
+	void testConcurrentMembershipWritesAndReads() throws Exception {
+		List<Team> teams = IntStream.range(0, 10).mapToObj(x -> Team.createTeam("team" + x)).collect(Collectors.toList());
+		List<User> users = IntStream.range(0, THREADS * 5).mapToObj(x -> User.createUser("user" + x)).collect(Collectors.toList());
+		dbm.insertTeams(teams);
+		dbm.insertUsers(users);
+
+		List<Future<?>> futures = new ArrayList<>();
+		for (int u = 0; u < users.size(); u++) {
+			User user = users.get(u);
+			Team[] memberships = teams.subList(0, 1 + u % teams.size()).toArray(Team[]::new);
+			futures.add(executor.submit(() -> {
+				dbm.setTeamsForUser(user, memberships);
+				assertEquals(memberships.length, dbm.getUserTeams(user).size());
+				assertEquals(user.getId(), dbm.getUser(user.getLogin()).getId());
+				return null;
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get(60, TimeUnit.SECONDS);
+		}
+
+		Map<User, List<Team>> userTeams = dbm.getTeamsForUsers(users);
+		for (int u = 0; u < users.size(); u++) {
+			assertEquals(1 + u % teams.size(), userTeams.get(users.get(u)).size());
+		}
+	}
+
+	@Test
+	void testConcurrentLookupsAreCoalesced() throws Exception {
+		List<User> users = IntStream.range(0, 20).mapToObj(x -> User.createUser("user" + x)).collect(Collectors.toList());
+		dbm.insertUsers(users);
+		dbm.close();
+		Properties properties = db.properties();
+		properties.setProperty("pool.maxSize", String.valueOf(THREADS));
+		properties.setProperty("coalesce.enabled", "true");
+		properties.setProperty("coalesce.windowMicros", "5000");
+		dbm = db.newManager(properties);
+
+		List<Callable<User>> lookups = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			String login = i % 21 == 20 ? "nobody" : "user" + i % 21;
+			lookups.add(() -> dbm.getUser(login));
+		}
+		for (Future<User> future : executor.invokeAll(lookups)) {
+			User user = future.get();
+			if (user.getLogin().equals("nobody")) {
+				assertEquals(0, user.getId());
+			} else {
+				assertEquals(users.get(users.indexOf(user)).getId(), user.getId());
+			}
+		}
+
+		Map<String, User> found = dbm.getUsers(Arrays.asList("user1", "user2", "nobody"));
+		assertEquals(new HashSet<>(Arrays.asList("user1", "user2")), found.keySet());
+
+		// each lookup counts once, and the shared queries under an operation of their own
+		MetricsSnapshot metrics = dbm.getMetrics();
+		assertEquals(200, metrics.getOperation(Operation.GET_USER).getCalls());
+		assertEquals(1, metrics.getOperation(Operation.GET_USERS).getCalls());
+		assertTrue(metrics.getOperation(Operation.COALESCED_USERS).getCalls() > 0);
+	}
+}
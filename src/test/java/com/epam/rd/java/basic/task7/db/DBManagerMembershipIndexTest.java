@@ -0,0 +1,83 @@
+package com.epam.rd.java.basic.task7.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringReader;
+import java.util.*;
+import java.util.stream.*;
+
+import org.junit.jupiter.api.*;
+
+import com.epam.rd.java.basic.task7.db.entity.*;
+
+public class DBManagerMembershipIndexTest extends DatabaseTest {
+
+	private List<User> users;
+
+	private List<Team> teams;
+
+	@Override
+	protected void configure(Properties properties) {
+		properties.setProperty("membershipIndex.enabled", "true");
+	}
+
+	@Override
+	protected boolean managerPerTest() {
+		return true;
+	}
+
+	@BeforeEach
+	void setUp() throws DBException {
+		users = IntStream.range(0, 10).mapToObj(x -> User.createUser("user" + x)).collect(Collectors.toList());
+		teams = IntStream.range(0, 4).mapToObj(x -> Team.createTeam("team" + x)).collect(Collectors.toList());
+		dbm.insertUsers(users);
+		dbm.insertTeams(teams);
+		dbm.setTeamsForUser(users.get(0), teams.get(0), teams.get(1));
+	}
+
+	@Test
+	void testReadsAreServedFromTheIndex() throws DBException {
+		assertEquals(List.of(teams.get(0), teams.get(1)), dbm.getUserTeams(users.get(0)));
+		long acquired = dbm.getMetrics().getConnectionAcquire().getCount();
+
+		dbm.setTeamsForUser(users.get(1), teams.get(1));
+		assertEquals(List.of(users.get(0), users.get(1)), dbm.getTeamUsers(teams.get(1)));
+		assertEquals(List.of(teams.get(1)), dbm.getUserTeams(users.get(1)));
+		assertEquals(Collections.emptyList(), dbm.getUserTeams(users.get(2)));
+		Map<User, List<Team>> byUser = dbm.getTeamsForUsers(users.subList(0, 2));
+		assertEquals(List.of(teams.get(0), teams.get(1)), byUser.get(users.get(0)));
+		assertEquals(2, dbm.countMembers(teams.get(1)));
+		assertEquals(2, dbm.countTeams(users.get(0)));
+
+		// only setTeamsForUser went to the database
+		assertEquals(acquired + 1, dbm.getMetrics().getConnectionAcquire().getCount());
+	}
+
+	@Test
+	void testIndexFollowsDeletesAndRenames() throws DBException {
+		dbm.setTeamsForUser(users.get(1), teams.get(0));
+		assertEquals(2, dbm.getTeamUsers(teams.get(0)).size());
+
+		dbm.deleteUsers(users.get(1));
+		assertEquals(List.of(users.get(0)), dbm.getTeamUsers(teams.get(0)));
+
+		dbm.deleteTeam(teams.get(1));
+		assertEquals(List.of(teams.get(0)), dbm.getUserTeams(users.get(0)));
+
+		teams.get(0).setName("renamed");
+		dbm.updateTeam(teams.get(0));
+		assertEquals("renamed", dbm.getUserTeams(users.get(0)).get(0).getName());
+	}
+
+	@Test
+	void testWritesOutsideTheSynchronousPath() throws Exception {
+		assertEquals(2, dbm.getUserTeams(users.get(0)).size());
+
+		dbm.enqueueTeamsForUser(users.get(2), teams.get(2)).get();
+		assertEquals(List.of(teams.get(2)), dbm.getUserTeams(users.get(2)));
+
+		new CsvImporter(dbm, false).importMemberships(new StringReader("user3,team3\n"));
+		assertEquals(List.of(teams.get(3)), dbm.getUserTeams(users.get(3)));
+		assertEquals(List.of(users.get(3)), dbm.getTeamUsers(teams.get(3)));
+	}
+}
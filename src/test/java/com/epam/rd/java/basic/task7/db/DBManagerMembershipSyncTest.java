@@ -0,0 +1,95 @@
+package com.epam.rd.java.basic.task7.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+
+import org.junit.jupiter.api.*;
+
+import com.epam.rd.java.basic.task7.db.entity.*;
+import com.epam.rd.java.basic.task7.db.metrics.Operation;
+
+public class DBManagerMembershipSyncTest extends DatabaseTest {
+
+	private User user;
+
+	private List<Team> teams;
+
+	@Override
+	protected void configure(Properties properties) {
+		properties.setProperty("membershipIndex.enabled", "true");
+	}
+
+	@Override
+	protected boolean managerPerTest() {
+		return true;
+	}
+
+	@BeforeEach
+	void setUp() throws DBException {
+		user = User.createUser("syncer");
+		teams = IntStream.range(0, 5).mapToObj(x -> Team.createTeam("team" + x)).collect(Collectors.toList());
+		dbm.insertUser(user);
+		dbm.insertTeams(teams);
+		dbm.setTeamsForUser(user, teams.get(0), teams.get(1), teams.get(2));
+	}
+
+	@Test
+	void testReplaceAppliesOnlyTheDelta() throws Exception {
+		assertEquals(3, dbm.getUserTeams(user).size());
+		dbm.resetMetrics();
+
+		assertTrue(dbm.replaceTeamsForUser(user, teams.get(1), teams.get(2), teams.get(3), teams.get(3)));
+		assertEquals(2, dbm.getMetrics().getOperation(Operation.REPLACE_TEAMS_FOR_USER).getRows());
+		assertEquals(Set.of(teams.get(1), teams.get(2), teams.get(3)), new HashSet<>(dbm.getUserTeams(user)));
+		assertEquals(3, db.count("users_teams"));
+
+		dbm.replaceTeamsForUser(user, teams.get(1), teams.get(2), teams.get(3));
+		assertEquals(2, dbm.getMetrics().getOperation(Operation.REPLACE_TEAMS_FOR_USER).getRows());
+
+		dbm.replaceTeamsForUser(user);
+		assertEquals(Collections.emptyList(), dbm.getUserTeams(user));
+		assertEquals(0, db.count("users_teams"));
+	}
+
+	@Test
+	void testAddSkipsExistingMemberships() throws Exception {
+		assertThrows(DBException.class, () -> dbm.setTeamsForUser(user, teams.get(2), teams.get(3)));
+		assertEquals(3, db.count("users_teams"));
+
+		assertTrue(dbm.addTeamsForUser(user, teams.get(2), teams.get(3), teams.get(4)));
+		assertEquals(2, dbm.getMetrics().getOperation(Operation.ADD_TEAMS_FOR_USER).getRows());
+		assertEquals(5, db.count("users_teams"));
+		assertEquals(new HashSet<>(teams), new HashSet<>(dbm.getUserTeams(user)));
+		assertEquals(1, dbm.countMembers(teams.get(4)));
+	}
+
+	@Test
+	void testConcurrentReplacesDoNotInterleave() throws Exception {
+		List<Team> left = List.of(teams.get(0), teams.get(1));
+		List<Team> right = List.of(teams.get(1), teams.get(3), teams.get(4));
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (List<Team> wanted : List.of(left, right, left, right)) {
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < 300; i++) {
+						dbm.replaceTeamsForUser(user, wanted.toArray(new Team[0]));
+						dbm.addTeamsForUser(user, wanted.get(0));
+					}
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get(60, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		Set<Team> actual = new HashSet<>(dbm.getUserTeams(user));
+		assertTrue(actual.equals(new HashSet<>(left)) || actual.equals(new HashSet<>(right)), actual.toString());
+		assertEquals(actual.size(), db.count("users_teams"));
+	}
+}
@@ -0,0 +1,74 @@
+package com.epam.rd.java.basic.task7.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.stream.*;
+
+import javax.management.*;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.jupiter.api.*;
+
+import com.epam.rd.java.basic.task7.db.entity.*;
+import com.epam.rd.java.basic.task7.db.metrics.*;
+
+public class DBManagerMetricsTest extends DatabaseTest {
+
+	@Override
+	protected void configure(Properties properties) {
+		properties.setProperty("cache.enabled", "true");
+		properties.setProperty("metrics.jmx", "true");
+	}
+
+	@BeforeEach
+	void setUp() {
+		dbm.resetMetrics();
+	}
+
+	@Test
+	void testOperationsAreCounted() throws DBException {
+		List<User> users = IntStream.range(0, 5).mapToObj(x -> User.createUser("metric" + x))
+				.collect(Collectors.toList());
+		dbm.insertUsers(users);
+		dbm.getUser("metric1");
+		dbm.getUser("metric1");
+		dbm.getUser("nobody");
+		dbm.findAllUsers();
+		try (Stream<User> stream = dbm.streamAllUsers()) {
+			assertEquals(2, stream.limit(2).count());
+		}
+		assertThrows(DBException.class, () -> dbm.insertUser(User.createUser("metric1")));
+
+		MetricsSnapshot snapshot = dbm.getMetrics();
+		assertEquals(1, snapshot.getOperation(Operation.INSERT_USERS).getCalls());
+		assertEquals(5, snapshot.getOperation(Operation.INSERT_USERS).getRows());
+		assertEquals(3, snapshot.getOperation(Operation.GET_USER).getCalls());
+		assertEquals(2, snapshot.getOperation(Operation.GET_USER).getRows());
+		assertEquals(users.size(), snapshot.getOperation(Operation.FIND_ALL_USERS).getRows());
+		assertEquals(2, snapshot.getOperation(Operation.STREAM_USERS).getRows());
+		assertEquals(1, snapshot.getOperation(Operation.INSERT_USER).getErrors());
+		assertEquals(0, snapshot.getOperation(Operation.UPDATE_TEAM).getCalls());
+		assertTrue(snapshot.getOperation(Operation.GET_USER).getLatency().getMax() > 0);
+		// insertUsers filled the cache, so neither lookup of metric1 borrows a connection
+		assertEquals(5, snapshot.getConnectionAcquire().getCount());
+		assertEquals(2, snapshot.getUserCache().getHits());
+		assertEquals(0, snapshot.getActiveConnections());
+	}
+
+	@Test
+	void testMetricsAreExposedThroughJmx() throws Exception {
+		dbm.insertTeam(Team.createTeam("jmx"));
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		Set<ObjectName> names = server.queryNames(new ObjectName("com.epam.rd.java.basic.task7:type=DBManager,*"),
+				null);
+		assertEquals(1, names.size());
+
+		CompositeData metrics = (CompositeData) server.getAttribute(names.iterator().next(), "Metrics");
+		CompositeData[] operations = (CompositeData[]) metrics.get("operations");
+		assertEquals(1, operations.length);
+		assertEquals("INSERT_TEAM", operations[0].get("operation"));
+		assertEquals(1L, operations[0].get("calls"));
+	}
+}
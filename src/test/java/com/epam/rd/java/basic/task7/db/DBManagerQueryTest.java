@@ -0,0 +1,69 @@
+package com.epam.rd.java.basic.task7.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.stream.*;
+
+import org.junit.jupiter.api.*;
+
+import com.epam.rd.java.basic.task7.db.entity.*;
+
+public class DBManagerQueryTest extends DatabaseTest {
+
+	private List<User> users;
+
+	private List<Team> teams;
+
+	@Override
+	protected void configure(Properties properties) {
+		properties.setProperty("pool.maxSize", "1");
+		properties.setProperty("pool.acquireTimeoutMillis", "1000");
+		properties.setProperty("query.fetchSize", "7");
+	}
+
+	@BeforeAll
+	void globalSetUp() throws Exception {
+		users = IntStream.range(0, 50).mapToObj(x -> User.createUser("user" + x)).collect(Collectors.toList());
+		teams = IntStream.range(0, 20).mapToObj(x -> Team.createTeam("team" + x)).collect(Collectors.toList());
+		dbm.insertUsers(users);
+		dbm.insertTeams(teams);
+	}
+
+	@Test
+	void testKeysetPaginationVisitsEveryUserOnce() throws DBException {
+		List<User> seen = new ArrayList<>();
+		int afterId = 0;
+		List<User> page;
+		while (!(page = dbm.findUsers(afterId, 8)).isEmpty()) {
+			assertTrue(page.size() <= 8);
+			seen.addAll(page);
+			afterId = page.get(page.size() - 1).getId();
+		}
+		assertEquals(users, seen);
+	}
+
+	@Test
+	void testTeamPageStartsAfterGivenId() throws DBException {
+		List<Team> page = dbm.findTeams(teams.get(4).getId(), 3);
+		assertEquals(teams.subList(5, 8), page);
+		assertEquals(Collections.emptyList(), dbm.findTeams(teams.get(19).getId(), 3));
+	}
+
+	@Test
+	void testStreamAllUsers() throws DBException {
+		try (Stream<User> stream = dbm.streamAllUsers()) {
+			assertEquals(new HashSet<>(users), stream.collect(Collectors.toSet()));
+		}
+		// the single pooled connection must have been released by close()
+		assertEquals(users.size(), dbm.findAllUsers().size());
+	}
+
+	@Test
+	void testStreamAllTeamsReleasesConnectionWhenClosedEarly() throws DBException {
+		try (Stream<Team> stream = dbm.streamAllTeams()) {
+			assertEquals(3, stream.limit(3).count());
+		}
+		assertEquals(teams.size(), dbm.findAllTeams().size());
+	}
+}
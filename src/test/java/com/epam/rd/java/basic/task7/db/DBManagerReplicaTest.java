@@ -0,0 +1,114 @@
+package com.epam.rd.java.basic.task7.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.*;
+
+import com.epam.rd.java.basic.task7.db.config.AppConfig;
+import com.epam.rd.java.basic.task7.db.entity.*;
+import com.epam.rd.java.basic.task7.db.metrics.*;
+
+public class DBManagerReplicaTest {
+
+	private static final long STICKY_MILLIS = 300;
+
+	private static final AtomicLong clock = new AtomicLong();
+
+	private static TestDatabase primary;
+
+	private static TestDatabase replica1;
+
+	private static TestDatabase replica2;
+
+	private static DBManager dbm;
+
+	@BeforeAll
+	static void globalSetUp() throws Exception {
+		primary = new TestDatabase("primarydb");
+		replica1 = new TestDatabase("replicadb1");
+		replica2 = new TestDatabase("replicadb2");
+		// replication is not simulated: every database holds its own marker user
+		insertLogin(primary, "primary");
+		insertLogin(replica1, "replica1");
+		insertLogin(replica2, "replica2");
+
+		Properties properties = primary.properties();
+		properties.setProperty("replica.urls", replica1.getUrl() + ", " + replica2.getUrl());
+		properties.setProperty("replica.stickyMillis", Long.toString(STICKY_MILLIS));
+		properties.setProperty("pool.maxSize", "1");
+		properties.setProperty("pool.acquireTimeoutMillis", "10000");
+		dbm = new DBManager(AppConfig.of(properties), new DBMetrics(), clock::get);
+	}
+
+	@AfterAll
+	static void globalTearDown() throws Exception {
+		dbm.close();
+		primary.close();
+		replica1.close();
+		replica2.close();
+	}
+
+	@Test
+	void testReadsAreSpreadOverReplicas() throws Exception {
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(STICKY_MILLIS));
+		Set<String> seen = new HashSet<>();
+		for (int i = 0; i < 4; i++) {
+			seen.add(marker());
+		}
+		assertEquals(Set.of("replica1", "replica2"), seen);
+	}
+
+	@Test
+	void testReadsFollowOwnWritesToThePrimary() throws Exception {
+		dbm.insertUser(User.createUser("written"));
+		assertEquals(2, primary.count("users"));
+		assertEquals(1, replica1.count("users"));
+		assertEquals(1, replica2.count("users"));
+
+		assertEquals("primary", marker());
+		assertTrue(dbm.getUser("written").getId() > 0);
+
+		ExecutorService other = Executors.newSingleThreadExecutor();
+		try {
+			assertNotEquals("primary", other.submit(DBManagerReplicaTest::marker).get());
+		} finally {
+			other.shutdown();
+		}
+
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(STICKY_MILLIS) - 1);
+		assertEquals("primary", marker());
+		clock.incrementAndGet();
+		assertNotEquals("primary", marker());
+	}
+
+	@Test
+	void testBusyReplicasFallBackToThePrimaryWithoutWaiting() throws Exception {
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(STICKY_MILLIS));
+		dbm.resetMetrics();
+		// with one connection per pool, these hold both replicas
+		try (Connection first = dbm.getReadConnection(); Connection second = dbm.getReadConnection()) {
+			assertEquals("primary", assertTimeout(Duration.ofSeconds(5), DBManagerReplicaTest::marker));
+		}
+		assertEquals(1, dbm.getMetrics().getOperation(Operation.REPLICA_FALLBACK).getCalls());
+		assertNotEquals("primary", marker());
+	}
+
+	private static String marker() throws DBException {
+		for (User user : dbm.findAllUsers()) {
+			if (!user.getLogin().equals("written")) {
+				return user.getLogin();
+			}
+		}
+		return null;
+	}
+
+	private static void insertLogin(TestDatabase db, String login) throws SQLException {
+		db.getConnection().createStatement().executeUpdate("INSERT INTO users (login) VALUES ('" + login + "')");
+	}
+}
@@ -0,0 +1,52 @@
+package com.epam.rd.java.basic.task7.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.stream.*;
+
+import org.junit.jupiter.api.*;
+
+import com.epam.rd.java.basic.task7.db.entity.*;
+
+public class DBManagerSharedEntitiesTest extends DatabaseTest {
+
+	@Override
+	protected void configure(Properties properties) {
+		properties.setProperty("entities.shared", "true");
+	}
+
+	@Test
+	void testScansReuseImmutableInstances() throws Exception {
+		List<User> users = IntStream.range(0, 5).mapToObj(x -> User.createUser("shared" + x)).collect(Collectors.toList());
+		Team team = Team.createTeam("teamS");
+		dbm.insertUsers(users);
+		dbm.insertTeam(team);
+		dbm.setTeamsForUser(users.get(0), team);
+
+		List<User> first = dbm.findAllUsers();
+		List<User> second = dbm.findAllUsers();
+		assertEquals(users, first);
+		for (int i = 0; i < first.size(); i++) {
+			assertSame(first.get(i), second.get(i));
+			assertTrue(first.get(i) instanceof ImmutableUser);
+			assertEquals(users.get(i).hashCode(), first.get(i).hashCode());
+		}
+		assertSame(first.get(1), dbm.findUsers(first.get(0).getId(), 1).get(0));
+		assertThrows(UnsupportedOperationException.class, () -> first.get(0).setLogin("changed"));
+
+		Team shared = dbm.getUserTeams(users.get(0)).get(0);
+		assertSame(shared, dbm.findAllTeams().get(0));
+		assertThrows(UnsupportedOperationException.class, () -> shared.setName("changed"));
+
+		team.setName("teamR");
+		dbm.updateTeam(team);
+		Team renamed = dbm.getUserTeams(users.get(0)).get(0);
+		assertNotSame(shared, renamed);
+		assertEquals("teamR", renamed.getName());
+		assertEquals("teamS", shared.getName());
+
+		assertTrue(dbm.getUser("shared0").getId() > 0);
+		assertFalse(dbm.getUser("shared0").isImmutable());
+	}
+}
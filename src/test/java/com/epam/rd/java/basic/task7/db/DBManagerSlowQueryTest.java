@@ -0,0 +1,88 @@
+package com.epam.rd.java.basic.task7.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringReader;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+
+import org.junit.jupiter.api.*;
+
+import com.epam.rd.java.basic.task7.db.entity.*;
+import com.epam.rd.java.basic.task7.db.metrics.SlowQueryLog;
+
+public class DBManagerSlowQueryTest extends DatabaseTest {
+
+	private static final Logger LOG = Logger.getLogger(SlowQueryLog.class.getName());
+
+	private static final BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+
+	private static final Handler handler = new Handler() {
+		@Override
+		public void publish(LogRecord record) {
+			messages.add(record.getMessage());
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	};
+
+	@Override
+	protected void configure(Properties properties) {
+		properties.setProperty("slowQuery.thresholdMillis", "0");
+	}
+
+	@BeforeAll
+	static void globalSetUp() {
+		LOG.addHandler(handler);
+	}
+
+	@AfterAll
+	static void globalTearDown() {
+		LOG.removeHandler(handler);
+	}
+
+	@Test
+	void testStatementsAreLoggedWithConstantNameParamsAndRows() throws Exception {
+		User user = User.createUser("slow");
+		Team teamA = Team.createTeam("teamA");
+		Team teamB = Team.createTeam("teamB");
+		dbm.insertUser(user);
+		dbm.insertTeams(List.of(teamA, teamB));
+		dbm.setTeamsForUser(user, teamA, teamB);
+		messages.clear();
+
+		dbm.getUserTeams(user);
+		String logged = next("FIND_USER_TEAMS");
+		assertTrue(logged.contains("2 rows"), logged);
+		assertTrue(logged.contains("params [" + user.getId() + "]"), logged);
+		assertTrue(logged.contains("connection acquire"), logged);
+
+		dbm.findTeams(0, 1);
+		assertTrue(next("FIND_TEAMS_AFTER").contains("1 rows"));
+
+		dbm.getUsers(List.of("slow", "nobody"));
+		assertTrue(next("GET_USERS").contains("params [slow, nobody]"));
+
+		new CsvImporter(dbm, false).importUsers(new StringReader("a\nb\nc\n"));
+		assertTrue(next("INSERT_USERS").contains("3 rows"));
+	}
+
+	private static String next(String name) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5_000;
+		String message;
+		while ((message = messages.poll(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS)) != null) {
+			if (message.startsWith(name + " took ")) {
+				return message;
+			}
+		}
+		fail("No slow query entry for " + name);
+		return null;
+	}
+}
@@ -0,0 +1,70 @@
+package com.epam.rd.java.basic.task7.db;
+
+import java.sql.*;
+import java.util.Properties;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * Base for tests that run a DBManager against a {@link TestDatabase} of their own, named after the
+ * test class. The manager is configured by {@link #configure} and built once for the class, or
+ * before each test when {@link #managerPerTest} is true; in that case every row is deleted after
+ * each test as well.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public abstract class DatabaseTest {
+
+	protected TestDatabase db;
+
+	protected DBManager dbm;
+
+	@BeforeAll
+	void createDatabase() throws Exception {
+		db = new TestDatabase(getClass().getSimpleName());
+		if (!managerPerTest()) {
+			dbm = newManager();
+		}
+	}
+
+	@AfterAll
+	void dropDatabase() throws Exception {
+		if (!managerPerTest()) {
+			dbm.close();
+		}
+		db.close();
+	}
+
+	@BeforeEach
+	void createManager() {
+		if (managerPerTest()) {
+			dbm = newManager();
+		}
+	}
+
+	@AfterEach
+	void deleteRows() throws Exception {
+		if (managerPerTest()) {
+			dbm.close();
+			try (Statement statement = db.getConnection().createStatement()) {
+				statement.executeUpdate("DELETE FROM users");
+				statement.executeUpdate("DELETE FROM teams");
+			}
+		}
+	}
+
+	/**
+	 * Adds the settings of the test to the connection properties of its database.
+	 */
+	protected void configure(Properties properties) {
+	}
+
+	protected boolean managerPerTest() {
+		return false;
+	}
+
+	protected DBManager newManager() {
+		Properties properties = db.properties();
+		configure(properties);
+		return db.newManager(properties);
+	}
+}
@@ -0,0 +1,25 @@
+package com.epam.rd.java.basic.task7.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+
+public class DialectTest {
+
+	@Test
+	void testMatchKeyFollowsCollation() {
+		assertEquals(Dialect.MYSQL, Dialect.of("jdbc:mysql://localhost/db"));
+		assertEquals(Dialect.MYSQL.matchKey("petrov"), Dialect.MYSQL.matchKey("Petrov"));
+		assertNotEquals(Dialect.DERBY.matchKey("petrov"), Dialect.DERBY.matchKey("Petrov"));
+	}
+
+	@Test
+	void testUpsertBindsOnePlaceholderPairPerRepeat() {
+		for (Dialect dialect : Dialect.values()) {
+			long placeholders = dialect.upsertMembership().chars().filter(c -> c == '?').count();
+			assertEquals(2 * dialect.upsertMembershipPairs(), placeholders, dialect.name());
+		}
+		assertTrue(Dialect.MYSQL.upsertMembership().endsWith("ON DUPLICATE KEY UPDATE team_id = team_id"));
+		assertFalse(Dialect.MYSQL.upsertMembership().contains("IGNORE"));
+	}
+}
@@ -0,0 +1,88 @@
+package com.epam.rd.java.basic.task7.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.*;
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+
+import com.epam.rd.java.basic.task7.db.entity.*;
+
+public class EntityMapperTest extends DatabaseTest {
+
+	private Connection connection;
+
+	public static class Membership {
+
+		private final String login;
+
+		private final int teamId;
+
+		private int userId;
+
+		public Membership(String login, int teamId) {
+			this.login = login;
+			this.teamId = teamId;
+		}
+
+		public void setUserId(int userId) {
+			this.userId = userId;
+		}
+	}
+
+	@BeforeAll
+	void globalSetUp() throws Exception {
+		connection = db.getConnection();
+		try (Statement statement = connection.createStatement()) {
+			statement.executeUpdate("INSERT INTO users (login) VALUES ('mapped0'), ('mapped1')");
+			statement.executeUpdate("INSERT INTO teams (name) VALUES ('teamM')");
+			statement.executeUpdate("INSERT INTO users_teams (user_id, team_id) SELECT u.id, t.id FROM users u, teams t");
+		}
+	}
+
+	@Test
+	void testMapsPluggedInTypeWithColumnsInAnyOrder() throws Exception {
+		EntityMapper<Membership> mapper = EntityMapper.builder(Membership.class)
+				.constructor("login", "team_id").set("user_id").build();
+		String sql = "SELECT t.id AS team_id, u.login, ut.user_id FROM users_teams ut"
+				+ " JOIN users u ON u.id = ut.user_id JOIN teams t ON t.id = ut.team_id ORDER BY u.login";
+		List<Membership> memberships = new ArrayList<>();
+		try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery(sql)) {
+			RowMapper<Membership> rows = mapper.forQuery(sql, rs);
+			assertSame(rows, mapper.forQuery(sql, rs));
+			while (rs.next()) {
+				memberships.add(rows.map(rs));
+			}
+		}
+		assertEquals(2, memberships.size());
+		assertEquals("mapped0", memberships.get(0).login);
+		assertEquals("mapped1", memberships.get(1).login);
+		assertTrue(memberships.get(0).userId > 0);
+		assertNotEquals(memberships.get(0).userId, memberships.get(1).userId);
+		assertEquals(memberships.get(0).teamId, memberships.get(1).teamId);
+
+		EntityMapper<Team> teams = EntityMapper.builder(Team.class).factory("createTeam", "name").set("id").build();
+		String teamSql = "SELECT name, id FROM teams";
+		try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery(teamSql)) {
+			RowMapper<Team> rows = teams.forQuery(teamSql, rs);
+			assertTrue(rs.next());
+			Team team = rows.map(rs);
+			assertEquals("teamM", team.getName());
+			assertEquals(memberships.get(0).teamId, team.getId());
+		}
+	}
+
+	@Test
+	void testRejectsMissingColumnsAndSetters() throws Exception {
+		EntityMapper<User> mapper = EntityMapper.builder(User.class).factory("createUser", "login").set("id").build();
+		String sql = "SELECT login FROM users";
+		try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery(sql)) {
+			SQLException e = assertThrows(SQLException.class, () -> mapper.forQuery(sql, rs));
+			assertTrue(e.getMessage().contains("id"));
+		}
+		assertThrows(IllegalArgumentException.class, () -> EntityMapper.builder(User.class).set("missing"));
+		assertThrows(IllegalArgumentException.class, () -> EntityMapper.builder(User.class).factory("createUser"));
+	}
+
+}
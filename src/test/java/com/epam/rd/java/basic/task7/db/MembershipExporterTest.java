@@ -0,0 +1,69 @@
+package com.epam.rd.java.basic.task7.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.*;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.*;
+
+import com.epam.rd.java.basic.task7.db.MembershipExporter.Format;
+import com.epam.rd.java.basic.task7.db.entity.*;
+
+public class MembershipExporterTest extends DatabaseTest {
+
+	private MembershipExporter exporter;
+
+	@Override
+	protected void configure(Properties properties) {
+		properties.setProperty("query.fetchSize", "16");
+	}
+
+	@BeforeAll
+	void globalSetUp() throws Exception {
+		exporter = new MembershipExporter(dbm);
+
+		List<User> users = IntStream.range(0, 100).mapToObj(x -> User.createUser("user" + x))
+				.collect(Collectors.toList());
+		List<Team> teams = List.of(Team.createTeam("teamA"), Team.createTeam("team,\"B\""));
+		dbm.insertUsers(users);
+		dbm.insertTeams(teams);
+		for (User user : users) {
+			dbm.setTeamsForUser(user, teams.toArray(Team[]::new));
+		}
+	}
+
+	@Test
+	void testCsv() throws DBException {
+		StringWriter out = new StringWriter();
+		assertEquals(200, exporter.export(out, Format.CSV));
+
+		List<String> lines = out.toString().lines().collect(Collectors.toList());
+		assertEquals(201, lines.size());
+		assertEquals("user_id,login,team_id,name", lines.get(0));
+		User user = dbm.getUser("user7");
+		Team team = dbm.getTeam("team,\"B\"");
+		assertTrue(lines.contains(user.getId() + ",user7," + team.getId() + ",\"team,\"\"B\"\"\""));
+	}
+
+	@Test
+	void testGzippedJsonLines() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		assertEquals(200, exporter.export(bytes, Format.JSON_LINES, true));
+
+		List<String> lines;
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(
+				new GZIPInputStream(new ByteArrayInputStream(bytes.toByteArray())), StandardCharsets.UTF_8))) {
+			lines = in.lines().collect(Collectors.toList());
+		}
+		assertEquals(200, lines.size());
+		User user = dbm.getUser("user42");
+		Team team = dbm.getTeam("teamA");
+		assertTrue(lines.contains("{\"userId\":" + user.getId() + ",\"login\":\"user42\",\"teamId\":"
+				+ team.getId() + ",\"team\":\"teamA\"}"));
+		assertTrue(lines.stream().anyMatch(line -> line.endsWith("\"team\":\"team,\\\"B\\\"\"}")));
+	}
+}
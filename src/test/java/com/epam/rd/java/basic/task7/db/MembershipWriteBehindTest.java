@@ -0,0 +1,134 @@
+package com.epam.rd.java.basic.task7.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.SQLTransientConnectionException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.*;
+
+import org.junit.jupiter.api.*;
+
+import com.epam.rd.java.basic.task7.db.config.AppConfig;
+import com.epam.rd.java.basic.task7.db.entity.*;
+
+public class MembershipWriteBehindTest extends DatabaseTest {
+
+	private List<User> users;
+
+	private List<Team> teams;
+
+	@Override
+	protected void configure(Properties properties) {
+		properties.setProperty("writeBehind.batchSize", "64");
+		properties.setProperty("writeBehind.flushIntervalMillis", "20");
+	}
+
+	@Override
+	protected boolean managerPerTest() {
+		return true;
+	}
+
+	@BeforeEach
+	void setUp() throws DBException {
+		users = IntStream.range(0, 100).mapToObj(x -> User.createUser("user" + x)).collect(Collectors.toList());
+		teams = IntStream.range(0, 10).mapToObj(x -> Team.createTeam("team" + x)).collect(Collectors.toList());
+		dbm.insertUsers(users);
+		dbm.insertTeams(teams);
+	}
+
+	@Test
+	void testQueuedMembershipsAreCommittedInBatches() throws Exception {
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (User user : users) {
+			futures.add(dbm.enqueueTeamsForUser(user, teams.toArray(Team[]::new)));
+		}
+		dbm.flushMemberships();
+
+		for (CompletableFuture<Void> future : futures) {
+			assertTrue(future.isDone());
+			future.get();
+		}
+		assertEquals(users.size() * teams.size(), db.count("users_teams"));
+		assertEquals(teams, sortByName(dbm.getUserTeams(users.get(42))));
+	}
+
+	@Test
+	void testRejectedPairFailsOnlyItsOwnFuture() throws Exception {
+		dbm.setTeamsForUser(users.get(0), teams.get(0));
+
+		CompletableFuture<Void> duplicate = dbm.enqueueTeamsForUser(users.get(0), teams.get(0));
+		CompletableFuture<Void> fresh = dbm.enqueueTeamsForUser(users.get(1), teams.get(0), teams.get(1));
+		dbm.flushMemberships();
+
+		ExecutionException ex = assertThrows(ExecutionException.class, () -> duplicate.get(5, TimeUnit.SECONDS));
+		assertTrue(ex.getCause() instanceof DBException);
+		fresh.get(5, TimeUnit.SECONDS);
+		assertEquals(3, db.count("users_teams"));
+	}
+
+	@Test
+	void testCloseFlushesPendingMemberships() throws Exception {
+		CompletableFuture<Void> future = dbm.enqueueTeamsForUser(users.get(0), teams.get(0), teams.get(1));
+		dbm.close();
+
+		future.get(5, TimeUnit.SECONDS);
+		assertEquals(2, db.count("users_teams"));
+	}
+
+	@Test
+	void testUnexpectedFailureDoesNotStopTheWriter() throws Exception {
+		DBManager failing = new DBManager(AppConfig.of(db.properties())) {
+			@Override
+			void insertMemberships(int[] userIds, int[] teamIds) {
+				throw new IllegalStateException("pool is closed");
+			}
+		};
+		MembershipWriteBehind writer = new MembershipWriteBehind(failing, 16, 8, 10, 1_000);
+		try {
+			ExecutionException ex = assertThrows(ExecutionException.class,
+					() -> writer.enqueue(1, 1).get(5, TimeUnit.SECONDS));
+			assertTrue(ex.getCause() instanceof IllegalStateException);
+			assertThrows(ExecutionException.class, () -> writer.enqueue(2, 2).get(5, TimeUnit.SECONDS));
+		} finally {
+			writer.close();
+			failing.close();
+		}
+		CompletableFuture<Void> afterClose = writer.enqueue(3, 3);
+		assertTrue(afterClose.isCompletedExceptionally());
+	}
+
+	@Test
+	void testUnavailableDatabaseFailsTheBatchWithoutRetries() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		DBManager down = new DBManager(AppConfig.of(db.properties())) {
+			@Override
+			void insertMemberships(int[] userIds, int[] teamIds) throws DBException {
+				calls.incrementAndGet();
+				throw new DBException("Cannot insert memberships",
+						new SQLTransientConnectionException("Timed out waiting for a connection"));
+			}
+		};
+		MembershipWriteBehind writer = new MembershipWriteBehind(down, 16, 8, 60_000, 1_000);
+		try {
+			List<CompletableFuture<Void>> futures = new ArrayList<>();
+			for (int i = 1; i <= 5; i++) {
+				futures.add(writer.enqueue(i, i));
+			}
+			writer.flush();
+			for (CompletableFuture<Void> future : futures) {
+				assertTrue(future.isCompletedExceptionally());
+			}
+			assertEquals(1, calls.get());
+		} finally {
+			writer.close();
+			down.close();
+		}
+	}
+
+	private static List<Team> sortByName(List<Team> teams) {
+		teams.sort(Comparator.comparing(Team::getName));
+		return teams;
+	}
+}
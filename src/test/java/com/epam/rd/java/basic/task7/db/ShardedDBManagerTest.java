@@ -0,0 +1,177 @@
+package com.epam.rd.java.basic.task7.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.*;
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+
+import com.epam.rd.java.basic.task7.db.entity.*;
+
+public class ShardedDBManagerTest {
+
+	private static final int SHARDS = 3;
+
+	private static final int USERS = 30;
+
+	private static final List<TestDatabase> dbs = new ArrayList<>();
+
+	private static ShardedDBManager sharded;
+
+	@BeforeAll
+	static void globalSetUp() throws Exception {
+		List<DBManager> managers = new ArrayList<>();
+		for (int i = 0; i < SHARDS; i++) {
+			TestDatabase db = new TestDatabase("sharddb" + i);
+			dbs.add(db);
+			managers.add(db.newManager(db.properties()));
+		}
+		sharded = new ShardedDBManager(managers);
+	}
+
+	@AfterAll
+	static void globalTearDown() throws Exception {
+		sharded.close();
+		for (TestDatabase db : dbs) {
+			db.close();
+		}
+	}
+
+	@Test
+	void testUsersArePartitionedAndMerged() throws Exception {
+		List<User> users = new ArrayList<>();
+		for (int i = 0; i < USERS; i++) {
+			users.add(User.createUser("part" + i));
+		}
+		sharded.insertUser(users.get(0));
+		sharded.insertUsers(users.subList(1, USERS));
+
+		int total = 0;
+		for (int i = 0; i < SHARDS; i++) {
+			int count = dbs.get(i).count("users");
+			assertTrue(count > 0, "shard " + i + " is empty");
+			total += count;
+		}
+		assertEquals(USERS, total);
+
+		Set<Integer> ids = new HashSet<>();
+		for (User user : users) {
+			assertTrue(ids.add(user.getId()), "duplicate id " + user.getId());
+			assertEquals(sharded.shardOf(user.getLogin()), user.getId() % SHARDS);
+			assertEquals(user.getId(), sharded.getUser(user.getLogin()).getId());
+		}
+		assertEquals(0, sharded.getUser("nobody").getId());
+		assertEquals(Set.of("part1", "part2", "part3"), sharded.getUsers(List.of("part1", "part2", "part3", "nobody")).keySet());
+
+		List<User> all = sharded.findAllUsers();
+		assertEquals(new HashSet<>(users), new HashSet<>(all));
+
+		List<User> paged = new ArrayList<>();
+		int afterId = 0;
+		List<User> page;
+		while (!(page = sharded.findUsers(afterId, 7)).isEmpty()) {
+			paged.addAll(page);
+			afterId = page.get(page.size() - 1).getId();
+		}
+		assertEquals(all, paged);
+
+		assertTrue(sharded.deleteUsers(users.toArray(new User[0])));
+		assertTrue(sharded.findAllUsers().isEmpty());
+	}
+
+	@Test
+	void testTeamsAreBroadcastAndMembershipsFollowTheirUser() throws Exception {
+		Team teamA = Team.createTeam("teamA");
+		Team teamB = Team.createTeam("teamB");
+		sharded.insertTeams(List.of(teamA, teamB));
+		for (TestDatabase db : dbs) {
+			assertEquals(2, db.count("teams"));
+		}
+
+		List<User> users = new ArrayList<>();
+		for (int i = 0; i < 12; i++) {
+			User user = User.createUser("member" + i);
+			sharded.insertUser(user);
+			sharded.setTeamsForUser(user, i % 2 == 0 ? new Team[]{teamA, teamB} : new Team[]{teamA});
+			users.add(user);
+		}
+
+		assertEquals(List.of(teamA, teamB), sharded.getUserTeams(users.get(0)));
+		assertEquals(1, sharded.countTeams(users.get(1)));
+		assertEquals(12, sharded.countMembers(teamA));
+		assertEquals(6, sharded.getTeamUsers(teamB).size());
+		assertEquals(new HashSet<>(users), new HashSet<>(sharded.getTeamUsers(teamA)));
+		assertEquals(2, sharded.getTeamsForUsers(users).get(users.get(4)).size());
+
+		teamB.setName("teamC");
+		sharded.updateTeam(teamB);
+		assertEquals(teamB.getId(), sharded.getTeam("teamC").getId());
+		sharded.deleteTeam(teamA);
+		for (TestDatabase db : dbs) {
+			assertEquals(1, db.count("teams"));
+		}
+		assertEquals(List.of(teamB), sharded.getUserTeams(users.get(0)));
+		sharded.deleteUsers(users.toArray(new User[0]));
+	}
+
+	@Test
+	void testFailedTeamInsertIsUndoneAndDivergedIdsFailLoudly() throws Exception {
+		int teams = dbs.get(0).count("teams");
+		try (Statement statement = dbs.get(2).getConnection().createStatement()) {
+			statement.executeUpdate("ALTER TABLE teams ADD CONSTRAINT no_rejected CHECK (name <> 'rejected')");
+		}
+		try {
+			assertThrows(DBException.class, () -> sharded.insertTeam(Team.createTeam("rejected")));
+			for (TestDatabase db : dbs) {
+				assertEquals(teams, db.count("teams"));
+			}
+		} finally {
+			try (Statement statement = dbs.get(2).getConnection().createStatement()) {
+				statement.executeUpdate("ALTER TABLE teams DROP CONSTRAINT no_rejected");
+			}
+		}
+
+		// a team written to shard 2 alone moves its identity ahead of the others
+		try (Statement statement = dbs.get(2).getConnection().createStatement()) {
+			statement.executeUpdate("INSERT INTO teams (name) VALUES ('drift')");
+			statement.executeUpdate("DELETE FROM teams WHERE name = 'drift'");
+		}
+		try {
+			DBException e = assertThrows(DBException.class, () -> sharded.insertTeam(Team.createTeam("single")));
+			assertTrue(e.getMessage().contains("diverged"), e.getMessage());
+			for (TestDatabase db : dbs) {
+				assertEquals(teams, db.count("teams"));
+			}
+		} finally {
+			reseedTeamIds();
+		}
+
+		Team single = Team.createTeam("single");
+		sharded.insertTeam(single);
+		for (TestDatabase db : dbs) {
+			try (Statement statement = db.getConnection().createStatement();
+					ResultSet rs = statement.executeQuery("SELECT id FROM teams WHERE name = 'single'")) {
+				assertTrue(rs.next());
+				assertEquals(single.getId(), rs.getInt(1));
+			}
+		}
+		sharded.deleteTeam(single);
+	}
+
+	private static void reseedTeamIds() throws SQLException {
+		int next = 1;
+		for (TestDatabase db : dbs) {
+			try (Statement statement = db.getConnection().createStatement();
+					ResultSet rs = statement.executeQuery("SELECT MAX(id) FROM teams")) {
+				rs.next();
+				next = Math.max(next, rs.getInt(1) + 1);
+			}
+		}
+		for (TestDatabase db : dbs) {
+			try (Statement statement = db.getConnection().createStatement()) {
+				statement.executeUpdate("ALTER TABLE teams ALTER COLUMN id RESTART WITH " + next);
+			}
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package com.epam.rd.java.basic.task7.db;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.sql.*;
+import java.util.Properties;
+
+import com.epam.rd.java.basic.task7.db.config.AppConfig;
+
+/**
+ * Embedded in-memory Derby database with the task schema, for tests that need their own DBManager.
+ */
+public class TestDatabase implements AutoCloseable {
+
+	private static final String[] CREATE_TABLES = {
+			"CREATE TABLE users ("
+			+ "	id INT PRIMARY KEY GENERATED ALWAYS AS IDENTITY,"
+			+ "	login VARCHAR(10) UNIQUE"
+			+ ")",
+			"CREATE TABLE teams ("
+			+ "	id INT PRIMARY KEY GENERATED ALWAYS AS IDENTITY,"
+			+ "	name VARCHAR(10)"
+			+ ")",
+			"CREATE TABLE users_teams ("
+			+ "	user_id INT REFERENCES users(id) on delete cascade,"
+			+ "	team_id INT REFERENCES teams(id) on delete cascade,"
+			+ "	UNIQUE (user_id, team_id)"
+			+ ")",
+			"CREATE INDEX users_teams_team_user ON users_teams (team_id, user_id)"
+	};
+
+	private static final String DERBY_LOG_FILE = "derby.log";
+
+	private final String name;
+
+	private final Connection con;
+
+	public TestDatabase(String name) throws SQLException {
+		this.name = name;
+		this.con = DriverManager.getConnection(getUrl() + ";create=true");
+		for (String ddl : CREATE_TABLES) {
+			con.createStatement().executeUpdate(ddl);
+		}
+	}
+
+	public String getUrl() {
+		return "jdbc:derby:memory:" + name;
+	}
+
+	public Connection getConnection() {
+		return con;
+	}
+
+	public int count(String table) throws SQLException {
+		try (ResultSet rs = con.createStatement().executeQuery("SELECT COUNT(*) FROM " + table)) {
+			rs.next();
+			return rs.getInt(1);
+		}
+	}
+
+	public Properties properties() {
+		Properties properties = new Properties();
+		properties.setProperty(AppConfig.CONNECTION_URL, getUrl());
+		return properties;
+	}
+
+	public DBManager newManager(Properties properties) {
+		return new DBManager(AppConfig.of(properties));
+	}
+
+	@Override
+	public void close() throws SQLException, IOException {
+		con.close();
+		try {
+			DriverManager.getConnection(getUrl() + ";drop=true");
+		} catch (SQLException ex) {
+			// Derby reports a successful drop as an exception
+		}
+		Files.deleteIfExists(Path.of(DERBY_LOG_FILE));
+	}
+}
@@ -0,0 +1,81 @@
+package com.epam.rd.java.basic.task7.db.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.*;
+
+public class EntityCacheTest {
+
+	@Test
+	void testLookupByNameAndId() {
+		EntityCache cache = new EntityCache(10, 0);
+		cache.put(1, "ivanov");
+
+		assertEquals(1, cache.getId("ivanov"));
+		assertEquals("ivanov", cache.getName(1));
+		assertEquals(EntityCache.MISS, cache.getId("petrov"));
+		assertNull(cache.getName(2));
+
+		CacheStats stats = cache.stats();
+		assertEquals(2, stats.getHits());
+		assertEquals(2, stats.getMisses());
+		assertEquals(0.5, stats.getHitRatio());
+	}
+
+	@Test
+	void testLeastRecentlyUsedEntryIsEvicted() {
+		EntityCache cache = new EntityCache(2, 0);
+		cache.put(1, "a");
+		cache.put(2, "b");
+		cache.getId("a");
+		cache.put(3, "c");
+
+		assertEquals(1, cache.getId("a"));
+		assertEquals(EntityCache.MISS, cache.getId("b"));
+		assertNull(cache.getName(2));
+		assertEquals(3, cache.getId("c"));
+		assertEquals(1, cache.stats().getEvictions());
+	}
+
+	@Test
+	void testInvalidationRemovesBothIndexes() {
+		EntityCache cache = new EntityCache(10, 0);
+		cache.put(1, "a");
+		cache.invalidate(1);
+		assertEquals(EntityCache.MISS, cache.getId("a"));
+
+		cache.put(2, "b");
+		cache.invalidate("b");
+		assertNull(cache.getName(2));
+
+		cache.put(3, "c");
+		cache.put(3, "renamed");
+		assertEquals(EntityCache.MISS, cache.getId("c"));
+		assertEquals("renamed", cache.getName(3));
+	}
+
+	@Test
+	void testEntriesExpire() {
+		AtomicLong clock = new AtomicLong();
+		EntityCache cache = new EntityCache(10, 1, clock::get);
+		cache.put(1, "a");
+		clock.addAndGet(1_000_000);
+		assertEquals(1, cache.getId("a"));
+		clock.incrementAndGet();
+
+		assertEquals(EntityCache.MISS, cache.getId("a"));
+		assertEquals(0, cache.stats().getSize());
+	}
+
+	@Test
+	void testDisabledCacheStoresNothing() {
+		EntityCache cache = EntityCache.disabled();
+		cache.put(1, "a");
+
+		assertFalse(cache.isEnabled());
+		assertEquals(EntityCache.MISS, cache.getId("a"));
+		assertEquals(0, cache.stats().getSize());
+	}
+}
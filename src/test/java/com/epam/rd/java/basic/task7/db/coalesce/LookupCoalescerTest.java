@@ -0,0 +1,108 @@
+package com.epam.rd.java.basic.task7.db.coalesce;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+
+import org.junit.jupiter.api.*;
+
+import com.epam.rd.java.basic.task7.db.DBException;
+
+public class LookupCoalescerTest {
+
+	private final List<List<String>> loads = new CopyOnWriteArrayList<>();
+
+	private Map<String, Integer> load(List<String> keys) {
+		loads.add(keys);
+		return keys.stream().filter(k -> !k.startsWith("missing")).collect(Collectors.toMap(k -> k, String::length));
+	}
+
+	@Test
+	void testLookupsWithinWindowShareOneLoad() throws Exception {
+		try (LookupCoalescer<String, Integer> coalescer = new LookupCoalescer<>("test", this::load, 50_000, 100, 1)) {
+			CompletableFuture<Integer> a = coalescer.get("a");
+			CompletableFuture<Integer> bb = coalescer.get("bb");
+			CompletableFuture<Integer> again = coalescer.get("a");
+			CompletableFuture<Integer> missing = coalescer.get("missing");
+
+			assertSame(a, again);
+			assertEquals(1, a.get(5, TimeUnit.SECONDS));
+			assertEquals(2, bb.get(5, TimeUnit.SECONDS));
+			assertNull(missing.get(5, TimeUnit.SECONDS));
+			assertEquals(Collections.singletonList(Arrays.asList("a", "bb", "missing")), loads);
+			assertEquals(4, coalescer.getRequests());
+			assertEquals(1, coalescer.getDeduplicated());
+			assertEquals(1, coalescer.getBatches());
+		}
+	}
+
+	@Test
+	void testFullBatchIsLoadedWithoutWaitingForWindow() throws Exception {
+		try (LookupCoalescer<String, Integer> coalescer = new LookupCoalescer<>("test", this::load, 60_000_000, 3, 1)) {
+			List<CompletableFuture<Integer>> futures = new ArrayList<>();
+			for (String key : Arrays.asList("a", "b", "c")) {
+				futures.add(coalescer.get(key));
+			}
+			for (CompletableFuture<Integer> future : futures) {
+				assertEquals(1, future.get(5, TimeUnit.SECONDS));
+			}
+			assertEquals(1, loads.size());
+		}
+	}
+
+	@Test
+	void testLoadFailureCompletesAllWaiters() throws Exception {
+		DBException failure = new DBException("boom", null);
+		try (LookupCoalescer<String, Integer> coalescer = new LookupCoalescer<>("test", keys -> {
+			throw failure;
+		}, 1_000, 10, 1)) {
+			CompletableFuture<Integer> a = coalescer.get("a");
+			CompletableFuture<Integer> b = coalescer.get("b");
+
+			ExecutionException ex = assertThrows(ExecutionException.class, () -> a.get(5, TimeUnit.SECONDS));
+			assertSame(failure, ex.getCause());
+			assertThrows(ExecutionException.class, () -> b.get(5, TimeUnit.SECONDS));
+
+			// failed keys are not remembered
+			assertNotSame(a, coalescer.get("a"));
+		}
+	}
+
+	@Test
+	void testLookupDuringLoadStartsNewBatch() throws Exception {
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		try (LookupCoalescer<String, Integer> coalescer = new LookupCoalescer<>("test", keys -> {
+			loading.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				throw new DBException("Interrupted", e);
+			}
+			return load(keys);
+		}, 1_000, 1, 2)) {
+			CompletableFuture<Integer> first = coalescer.get("a");
+			assertTrue(loading.await(5, TimeUnit.SECONDS));
+			// the running load may have read before a write this caller made, so it must not be joined
+			CompletableFuture<Integer> second = coalescer.get("a");
+			assertNotSame(first, second);
+			release.countDown();
+			assertEquals(1, first.get(5, TimeUnit.SECONDS));
+			assertEquals(1, second.get(5, TimeUnit.SECONDS));
+			assertEquals(2, loads.size());
+		}
+	}
+
+	@Test
+	void testLookupAfterCloseFails() {
+		LookupCoalescer<String, Integer> coalescer = new LookupCoalescer<>("test", this::load, 1_000, 10, 1);
+		coalescer.close();
+
+		CompletableFuture<Integer> future = coalescer.get("a");
+		assertTrue(future.isCompletedExceptionally());
+		ExecutionException ex = assertThrows(ExecutionException.class, future::get);
+		assertTrue(ex.getCause() instanceof DBException);
+	}
+}
@@ -0,0 +1,65 @@
+package com.epam.rd.java.basic.task7.db.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Properties;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+public class AppConfigTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void testTypedSettingsAndDefaults() throws IOException {
+		Path file = dir.resolve("app.properties");
+		Files.writeString(file, "connection.url=jdbc:derby:memory:x\npool.maxSize=4\npool.acquireTimeoutMillis=250\n");
+
+		AppConfig config = AppConfig.load(file);
+
+		assertEquals("jdbc:derby:memory:x", config.getUrl());
+		assertEquals(4, config.getPoolSettings().getMaxSize());
+		assertEquals(250, config.getPoolSettings().getAcquireTimeoutMillis());
+		assertEquals(1, config.getPoolSettings().getMinSize());
+		assertFalse(config.isWatchEnabled());
+
+		config.getPoolSettings().setMaxSize(99);
+		assertEquals(4, config.getPoolSettings().getMaxSize());
+	}
+
+	@Test
+	void testInvalidValuesAreRejected() {
+		assertInvalid("slowQuery.thresholdMillis", "-2");
+		assertInvalid("slowQuery.queueCapacity", "0");
+		assertInvalid("events.bufferSize", "0");
+		assertInvalid("writeBehind.flushIntervalMillis", "0");
+	}
+
+	@Test
+	void testWatcherPublishesReloadedConfig() throws Exception {
+		Path file = dir.resolve("app.properties");
+		Files.writeString(file, "connection.url=jdbc:derby:memory:a\n");
+		BlockingQueue<AppConfig> reloaded = new LinkedBlockingQueue<>();
+
+		try (ConfigWatcher ignored = new ConfigWatcher(file, reloaded::add)) {
+			Files.writeString(file, "connection.url=jdbc:derby:memory:b\n");
+
+			AppConfig config = reloaded.poll(30, TimeUnit.SECONDS);
+			assertNotNull(config, "Configuration change was not picked up");
+			assertEquals("jdbc:derby:memory:b", config.getUrl());
+			assertNull(reloaded.poll(1, TimeUnit.SECONDS), "A single change was reloaded more than once");
+		}
+	}
+
+	private static void assertInvalid(String key, String value) {
+		Properties properties = new Properties();
+		properties.setProperty(key, value);
+		IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> AppConfig.of(properties));
+		assertTrue(ex.getMessage().contains(key));
+	}
+}
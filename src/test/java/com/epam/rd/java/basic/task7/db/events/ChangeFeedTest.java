@@ -0,0 +1,90 @@
+package com.epam.rd.java.basic.task7.db.events;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.jupiter.api.*;
+
+public class ChangeFeedTest {
+
+	@Test
+	void testConcurrentWritersAreDeliveredInSequenceAndBatched() throws Exception {
+		int writers = 4;
+		int perWriter = 5_000;
+		ChangeFeed feed = new ChangeFeed(64 * 1024, 100);
+		List<ChangeEvent> received = Collections.synchronizedList(new ArrayList<>());
+		AtomicInteger batches = new AtomicInteger();
+		ChangeFeed.Subscription subscription = feed.subscribe(events -> {
+			assertTrue(events.size() <= 100);
+			batches.incrementAndGet();
+			received.addAll(events);
+		});
+
+		ExecutorService executor = Executors.newFixedThreadPool(writers);
+		for (int w = 0; w < writers; w++) {
+			int writer = w;
+			executor.submit(() -> {
+				for (int i = 0; i < perWriter; i++) {
+					feed.publish(ChangeEvent.Type.MEMBERSHIP_ADDED, writer, i, null);
+				}
+			});
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		subscription.close();
+
+		assertEquals(writers * perWriter, received.size());
+		int[] lastTeam = new int[writers];
+		Arrays.fill(lastTeam, -1);
+		for (int i = 0; i < received.size(); i++) {
+			ChangeEvent event = received.get(i);
+			assertEquals(i, event.getSequence());
+			assertEquals(lastTeam[event.getUserId()] + 1, event.getTeamId());
+			lastTeam[event.getUserId()] = event.getTeamId();
+		}
+		assertTrue(batches.get() < received.size());
+	}
+
+	@Test
+	void testSlowListenerMissesEventsWithoutBlockingWriters() throws Exception {
+		ChangeFeed feed = new ChangeFeed(16, 4);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicLong missed = new AtomicLong();
+		List<ChangeEvent> received = Collections.synchronizedList(new ArrayList<>());
+		ChangeFeed.Subscription subscription = feed.subscribe(new ChangeListener() {
+			@Override
+			public void onEvents(List<ChangeEvent> events) {
+				received.addAll(events);
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			@Override
+			public void onMissed(long count) {
+				missed.addAndGet(count);
+			}
+		});
+
+		feed.publish(ChangeEvent.Type.USER_INSERTED, 1, 0, "first");
+		long start = System.nanoTime();
+		for (int i = 2; i <= 1_000; i++) {
+			feed.publish(ChangeEvent.Type.USER_INSERTED, i, 0, "user" + i);
+		}
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+		release.countDown();
+		subscription.close();
+
+		assertTrue(missed.get() > 0);
+		assertEquals(1_000, received.size() + missed.get());
+		assertEquals(1_000, received.get(received.size() - 1).getUserId());
+		for (int i = 1; i < received.size(); i++) {
+			assertTrue(received.get(i).getSequence() > received.get(i - 1).getSequence());
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package com.epam.rd.java.basic.task7.db.index;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+
+import org.junit.jupiter.api.*;
+
+import com.epam.rd.java.basic.task7.db.entity.*;
+
+public class MembershipIndexTest {
+
+	private static final int USERS = 20_000;
+
+	private static final int TEAMS = 200;
+
+	private static final int TEAMS_PER_USER = 5;
+
+	private MembershipIndex index;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		index = new MembershipIndex(idx -> {
+			for (int user = 1; user <= USERS; user++) {
+				for (int k = 0; k < TEAMS_PER_USER; k++) {
+					int team = 1 + (user * 7 + k * 31) % TEAMS;
+					idx.addMembership(user, "u" + user, team, "t" + team);
+				}
+			}
+		});
+		index.ensureLoaded();
+	}
+
+	@Test
+	void testLookupsInBothDirections() {
+		assertEquals((long) USERS * TEAMS_PER_USER, index.getMembershipCount());
+		List<Team> teams = index.teamsOf(42);
+		assertEquals(TEAMS_PER_USER, teams.size());
+		for (Team team : teams) {
+			assertEquals("t" + team.getId(), team.getName());
+			List<User> members = index.usersOf(team.getId());
+			assertTrue(members.stream().anyMatch(u -> u.getId() == 42 && u.getLogin().equals("u42")));
+		}
+		assertEquals(Collections.emptyList(), index.teamsOf(USERS + 1));
+	}
+
+	@Test
+	void testRemovalsKeepBothSidesConsistent() {
+		for (int user = 1; user <= USERS; user += 2) {
+			index.removeUser(user);
+		}
+		Team team = index.teamsOf(2).get(0);
+		index.removeTeam(team.getId());
+		index.renameTeam(index.teamsOf(2).get(0).getId(), "renamed");
+
+		assertEquals(Collections.emptyList(), index.teamsOf(1));
+		assertEquals(TEAMS_PER_USER - 1, index.teamsOf(2).size());
+		assertEquals("renamed", index.teamsOf(2).get(0).getName());
+		assertEquals(Collections.emptyList(), index.usersOf(team.getId()));
+		long edges = 0;
+		for (int t = 1; t <= TEAMS; t++) {
+			for (User user : index.usersOf(t)) {
+				assertEquals(0, user.getId() % 2);
+				edges++;
+			}
+		}
+		assertEquals(index.getMembershipCount(), edges);
+		// remaining users are still reachable after backward-shift deletions
+		for (int user = 2; user <= USERS; user += 2) {
+			assertFalse(index.teamsOf(user).isEmpty(), "user " + user);
+		}
+	}
+
+	@Test
+	void testMemoryPerMembership() {
+		double bytesPerEdge = index.getBytesPerMembership();
+		// two int entries per membership plus per-node table overhead; boxed collections need ~100
+		assertTrue(bytesPerEdge < 24, "bytes per membership: " + bytesPerEdge);
+	}
+
+	@Test
+	void testIdOnlyUpdatesNeedLabels() {
+		User user = User.createUser("fresh");
+		user.setId(USERS + 1);
+		Team team = Team.createTeam("t1");
+		team.setId(1);
+
+		index.declare(user, team);
+		index.addMemberships(new int[]{USERS + 1}, new int[]{1});
+		assertEquals(List.of(team), index.teamsOf(USERS + 1));
+
+		index.addMemberships(new int[]{USERS + 2}, new int[]{1});
+		assertFalse(index.isLoaded());
+		assertNull(index.teamsOf(1));
+	}
+
+	@Test
+	void testLoadDoesNotBlockAndReplaysConcurrentUpdates() throws Exception {
+		CountDownLatch querying = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		MembershipIndex slow = new MembershipIndex(sink -> {
+			sink.addMembership(1, "u1", 1, "t1");
+			sink.addMembership(2, "u2", 1, "t1");
+			querying.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		Thread loader = new Thread(() -> {
+			try {
+				slow.ensureLoaded();
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		loader.start();
+		assertTrue(querying.await(10, TimeUnit.SECONDS));
+
+		// neither reads nor writes wait for the query
+		assertNull(slow.teamsOf(1));
+		slow.addMembership(3, "u3", 2, "t2");
+		slow.removeMembership(2, 1);
+		release.countDown();
+		loader.join(10_000);
+
+		assertTrue(slow.isLoaded());
+		assertEquals(Arrays.asList(1), slow.teamsOf(1).stream().map(Team::getId).collect(Collectors.toList()));
+		assertEquals(Collections.emptyList(), slow.teamsOf(2));
+		assertEquals("t2", slow.teamsOf(3).get(0).getName());
+	}
+
+	@Test
+	void testInvalidateDuringLoadDiscardsIt() throws Exception {
+		MembershipIndex[] self = new MembershipIndex[1];
+		self[0] = new MembershipIndex(sink -> {
+			sink.addMembership(1, "u1", 1, "t1");
+			self[0].invalidate();
+		});
+		self[0].ensureLoaded();
+		assertFalse(self[0].isLoaded());
+		assertNull(self[0].teamsOf(1));
+	}
+}
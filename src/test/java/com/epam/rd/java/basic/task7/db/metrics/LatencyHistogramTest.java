@@ -0,0 +1,48 @@
+package com.epam.rd.java.basic.task7.db.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+
+public class LatencyHistogramTest {
+
+	@Test
+	void testBucketBoundsCoverEveryValue() {
+		long[] values = {0, 1, 7, 8, 9, 15, 16, 17, 1000, 123_456_789, Long.MAX_VALUE};
+		for (long value : values) {
+			int index = LatencyHistogram.index(value);
+			assertTrue(LatencyHistogram.lowerBound(index) <= value, "value " + value);
+			if (value < Long.MAX_VALUE) {
+				assertTrue(LatencyHistogram.index(value + 1) >= index);
+			}
+		}
+		for (int i = 0; i < 400; i++) {
+			assertEquals(i, LatencyHistogram.index(LatencyHistogram.lowerBound(i)));
+		}
+	}
+
+	@Test
+	void testPercentilesAreWithinBucketPrecision() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 10_000; i++) {
+			histogram.record(i * 1_000L);
+		}
+		HistogramSnapshot snapshot = histogram.snapshot();
+
+		assertEquals(10_000, snapshot.getCount());
+		assertEquals(5_000_500.0, snapshot.getMean(), 0.001);
+		assertEquals(10_000_000, snapshot.getMax());
+		assertWithin(5_000_000, snapshot.getP50());
+		assertWithin(9_000_000, snapshot.getP90());
+		assertWithin(9_900_000, snapshot.getP99());
+		assertTrue(snapshot.getP999() <= snapshot.getMax());
+
+		histogram.reset();
+		assertEquals(0, histogram.snapshot().getCount());
+		assertEquals(0, histogram.snapshot().getP99());
+	}
+
+	private static void assertWithin(long expected, long actual) {
+		assertTrue(actual >= expected && actual <= expected * 1.125, expected + " vs " + actual);
+	}
+}
@@ -0,0 +1,174 @@
+package com.epam.rd.java.basic.task7.db.pool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.sql.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.*;
+
+public class ConnectionPoolTest {
+
+	private static final String CONNECTION_URL = "jdbc:derby:memory:pooldb;create=true";
+
+	private static final String DERBY_LOG_FILE = "derby.log";
+
+	private ConnectionPool pool;
+
+	@AfterAll
+	static void globalTearDown() throws IOException {
+		Files.deleteIfExists(Path.of(DERBY_LOG_FILE));
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (pool != null) {
+			pool.close();
+		}
+	}
+
+	@Test
+	void testPhysicalConnectionIsReused() throws SQLException {
+		pool = new ConnectionPool(CONNECTION_URL, settings(0, 2));
+
+		Connection first = pool.getConnection();
+		Connection physical = first.unwrap(Connection.class);
+		first.close();
+		assertTrue(first.isClosed());
+		assertThrows(SQLException.class, first::createStatement);
+
+		try (Connection second = pool.getConnection()) {
+			assertSame(physical, second.unwrap(Connection.class));
+		}
+		assertEquals(1, pool.getTotalConnections());
+		assertEquals(1, pool.getIdleConnections());
+		assertEquals(0, pool.getActiveConnections());
+	}
+
+	@Test
+	void testAcquireTimesOutWhenPoolIsExhausted() throws SQLException {
+		PoolSettings settings = settings(0, 1);
+		settings.setAcquireTimeoutMillis(50);
+		pool = new ConnectionPool(CONNECTION_URL, settings);
+
+		try (Connection ignored = pool.getConnection()) {
+			assertThrows(SQLTransientConnectionException.class, pool::getConnection);
+		}
+		try (Connection connection = pool.getConnection()) {
+			assertNotNull(connection);
+		}
+	}
+
+	@Test
+	void testBrokenConnectionIsReplacedOnBorrow() throws SQLException {
+		pool = new ConnectionPool(CONNECTION_URL, settings(0, 1));
+
+		Connection first = pool.getConnection();
+		Connection physical = first.unwrap(Connection.class);
+		first.close();
+		physical.close();
+
+		try (Connection second = pool.getConnection()) {
+			assertNotSame(physical, second.unwrap(Connection.class));
+			assertTrue(second.isValid(1));
+		}
+		assertEquals(1, pool.getTotalConnections());
+	}
+
+	@Test
+	void testUncommittedWorkIsRolledBackOnRelease() throws SQLException {
+		pool = new ConnectionPool(CONNECTION_URL, settings(0, 1));
+
+		try (Connection connection = pool.getConnection()) {
+			connection.setAutoCommit(false);
+		}
+		try (Connection connection = pool.getConnection()) {
+			assertTrue(connection.getAutoCommit());
+		}
+	}
+
+	@Test
+	void testIdleConnectionsAreEvictedDownToMinSize() throws Exception {
+		AtomicLong clock = new AtomicLong();
+		PoolSettings settings = settings(1, 3);
+		settings.setIdleTimeoutMillis(10);
+		settings.setEvictionIntervalMillis(60_000);
+		pool = new ConnectionPool(CONNECTION_URL, settings, clock::get);
+
+		Connection a = pool.getConnection();
+		Connection b = pool.getConnection();
+		Connection c = pool.getConnection();
+		a.close();
+		b.close();
+		c.close();
+
+		clock.addAndGet(10);
+		pool.maintain();
+		assertEquals(3, pool.getTotalConnections());
+
+		clock.incrementAndGet();
+		pool.maintain();
+		assertEquals(1, pool.getTotalConnections());
+	}
+
+	@Test
+	void testPreparedStatementsAreReusedPerConnection() throws SQLException {
+		pool = new ConnectionPool(CONNECTION_URL, settings(0, 1));
+		String sql = "VALUES CAST(? AS INT)";
+
+		PreparedStatement physical;
+		try (Connection connection = pool.getConnection()) {
+			PreparedStatement statement = connection.prepareStatement(sql);
+			assertSame(connection, statement.getConnection());
+			physical = statement.unwrap(PreparedStatement.class);
+			statement.setInt(1, 1);
+			statement.setMaxRows(1);
+			statement.executeQuery();
+			statement.close();
+			assertTrue(statement.isClosed());
+			assertThrows(SQLException.class, statement::executeQuery);
+		}
+		try (Connection connection = pool.getConnection();
+				PreparedStatement statement = connection.prepareStatement(sql);
+				PreparedStatement concurrent = connection.prepareStatement(sql)) {
+			assertSame(physical, statement.unwrap(PreparedStatement.class));
+			assertNotSame(physical, concurrent.unwrap(PreparedStatement.class));
+			assertEquals(0, statement.getMaxRows());
+			statement.setInt(1, 42);
+			try (ResultSet rs = statement.executeQuery()) {
+				assertTrue(rs.next());
+				assertEquals(42, rs.getInt(1));
+			}
+		}
+		assertEquals(1, pool.getStatementCacheStats().getHits());
+		assertEquals(2, pool.getStatementCacheStats().getMisses());
+	}
+
+	@Test
+	void testStatementCacheIsBounded() throws SQLException {
+		PoolSettings settings = settings(0, 1);
+		settings.setStatementCacheSize(2);
+		pool = new ConnectionPool(CONNECTION_URL, settings);
+
+		try (Connection connection = pool.getConnection()) {
+			for (int i = 0; i < 5; i++) {
+				connection.prepareStatement("VALUES " + i).close();
+			}
+			assertEquals(2, pool.getStatementCacheStats().getSize());
+			connection.prepareStatement("VALUES 4").close();
+			connection.prepareStatement("VALUES 0").close();
+		}
+		assertEquals(2, pool.getStatementCacheStats().getSize());
+		assertEquals(1, pool.getStatementCacheStats().getHits());
+		assertEquals(4, pool.getStatementCacheStats().getEvictions());
+	}
+
+	private static PoolSettings settings(int minSize, int maxSize) {
+		PoolSettings settings = new PoolSettings();
+		settings.setMinSize(minSize);
+		settings.setMaxSize(maxSize);
+		return settings;
+	}
+}